@@ -0,0 +1,51 @@
+package pbn.bench;
+
+/**
+ * Prediction of an enemy some ticks after its last scan, by a robot that has scanned every enemy twice
+ *
+ * @param <T> what the robot keeps of an enemy
+ */
+public class AdvanceBenchmark<T> extends Benchmark {
+
+    /**
+     * Ticks past the last scan that are benchmarked
+     */
+    public static final int[] TICKS = {1, 10, 50, 200};
+
+    /**
+     * The robot under benchmark
+     */
+    public interface Subject<T> {
+        /**
+         * Set up a fresh robot that has scanned every enemy of the fixture twice, as by {@link Fixture#scanTwice}
+         *
+         * @return what the robot keeps of each enemy
+         */
+        T[] scan(Fixture fixture);
+
+        /**
+         * @return the predicted x of an enemy the given number of ticks after its last scan
+         */
+        double advance(T enemy, int ticks);
+    }
+
+    private final int ticks;
+    private final Subject<T> subject;
+    private T[] enemies;
+
+    public AdvanceBenchmark(String name, int ticks, Subject<T> subject) {
+        super(name + " dt=" + ticks);
+        this.ticks = ticks;
+        this.subject = subject;
+    }
+
+    @Override
+    public void setUp(Fixture fixture) {
+        enemies = subject.scan(fixture);
+    }
+
+    @Override
+    public double run(int i) {
+        return subject.advance(enemies[i % enemies.length], ticks);
+    }
+}
@@ -0,0 +1,150 @@
+package pbn.bench;
+
+import pbn.internals.InternalsBenchmarks;
+import pbn.pinkpanther.PinkPantherBenchmarks;
+import pbn.poseidon.PoseidonBenchmarks;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the hot-path benchmarks of the robots over every combination of enemy count and battlefield size, and reports
+ * the time and the allocated bytes per operation.
+ * <p/>
+ * Each combination gets a fresh setup, a number of timed warmup iterations and a number of measured iterations;
+ * the mean over the measured iterations is reported. Allocation is read from the per-thread allocation counter of
+ * the JVM, so it counts every byte allocated by the operation, whether or not it is collected.
+ * <p/>
+ * Usage: {@code java -cp <robocode.jar>:<classes> pbn.bench.Bench [options]}
+ * <ul>
+ * <li>{@code -filter regex}: only run the benchmarks whose name matches</li>
+ * <li>{@code -enemies 1,5,10,30}: enemy counts</li>
+ * <li>{@code -fields 800x600,1200x1200,5000x5000}: battlefield sizes</li>
+ * <li>{@code -warmup n}, {@code -iterations n}, {@code -time ms}: iteration counts and length</li>
+ * <li>{@code -csv file -label text}: append the results to a CSV file, e.g. labelled with the commit</li>
+ * </ul>
+ */
+public class Bench {
+
+    private static volatile double sink;
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = Pattern.compile(".*");
+        int[] enemies = {1, 5, 10, 30};
+        double[][] fields = {{800, 600}, {1200, 1200}, {5000, 5000}};
+        int warmup = 5;
+        int iterations = 5;
+        long iterationNanos = 200000000L;
+        String csv = null;
+        String label = "";
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-filter")) {
+                filter = Pattern.compile(args[++i]);
+            } else if (arg.equals("-enemies")) {
+                String[] counts = args[++i].split(",");
+                enemies = new int[counts.length];
+                for (int j = 0; j < counts.length; j++) {
+                    enemies[j] = Integer.parseInt(counts[j]);
+                }
+            } else if (arg.equals("-fields")) {
+                String[] sizes = args[++i].split(",");
+                fields = new double[sizes.length][];
+                for (int j = 0; j < sizes.length; j++) {
+                    String[] size = sizes[j].split("x");
+                    fields[j] = new double[]{Double.parseDouble(size[0]), Double.parseDouble(size[1])};
+                }
+            } else if (arg.equals("-warmup")) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-iterations")) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-time")) {
+                iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+            } else if (arg.equals("-csv")) {
+                csv = args[++i];
+            } else if (arg.equals("-label")) {
+                label = args[++i];
+            } else {
+                System.err.println("Unknown option " + arg);
+                System.exit(1);
+            }
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.addAll(InternalsBenchmarks.all());
+        benchmarks.addAll(PinkPantherBenchmarks.all());
+        benchmarks.addAll(PoseidonBenchmarks.all());
+
+        PrintWriter csvOut = csv == null ? null : new PrintWriter(new FileWriter(csv, true));
+        System.out.println(String.format("%-44s %-32s %12s %12s", "benchmark", "fixture", "ns/op", "bytes/op"));
+        for (Benchmark benchmark : benchmarks) {
+            if (!filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            for (double[] field : fields) {
+                for (int enemyCount : enemies) {
+                    Fixture fixture = new Fixture(enemyCount, field[0], field[1]);
+                    benchmark.setUp(fixture);
+                    for (int i = 0; i < warmup; i++) {
+                        iterate(benchmark, iterationNanos);
+                    }
+                    double nanos = 0;
+                    double bytes = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        double[] result = iterate(benchmark, iterationNanos);
+                        nanos += result[0] / iterations;
+                        bytes += result[1] / iterations;
+                    }
+                    System.out.println(String.format("%-44s %-32s %12.1f %12.1f", benchmark.getName(), fixture, nanos, bytes));
+                    if (csvOut != null) {
+                        csvOut.println(String.format("%s,%s,%d,%.0f,%.0f,%.1f,%.1f", label, benchmark.getName(),
+                                enemyCount, field[0], field[1], nanos, bytes));
+                        csvOut.flush();
+                    }
+                }
+            }
+        }
+        if (csvOut != null) {
+            csvOut.close();
+        }
+    }
+
+    /**
+     * Run the operation in growing batches until the iteration time is used up
+     *
+     * @return (ns/op, bytes/op)
+     */
+    private static double[] iterate(Benchmark benchmark, long iterationNanos) {
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + iterationNanos;
+        long operations = 0;
+        int batch = 1;
+        double result = 0;
+        long now;
+        do {
+            for (int i = 0; i < batch; i++) {
+                result += benchmark.run((int) operations++);
+            }
+            if (batch < 1 << 16) {
+                batch *= 2;
+            }
+        } while ((now = System.nanoTime()) < end);
+        long bytes = allocatedBytes() - startBytes;
+        sink = result;
+        return new double[]{(double) (now - start) / operations, (double) bytes / operations};
+    }
+
+    private static long allocatedBytes() {
+        try {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (ClassCastException e) {
+            return 0; //not supported by this JVM
+        }
+    }
+}
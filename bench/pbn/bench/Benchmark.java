@@ -0,0 +1,27 @@
+package pbn.bench;
+
+/**
+ * A benchmarked operation. {@link #setUp} builds the state for one fixture, then {@link #run} is called repeatedly.
+ */
+public abstract class Benchmark {
+
+    private final String name;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public abstract void setUp(Fixture fixture) throws Exception;
+
+    /**
+     * Perform one operation
+     *
+     * @param i number of the invocation, to vary the input
+     * @return a result depending on the work done, consumed by the runner so it cannot be optimized away
+     */
+    public abstract double run(int i);
+}
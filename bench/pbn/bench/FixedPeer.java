@@ -0,0 +1,146 @@
+package pbn.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Peer of a robot under benchmark: the robot sees a fixed state that the benchmark sets directly, and its commands
+ * are ignored. Calls reach this class through a dynamic proxy of the peer interface and are forwarded to the public
+ * method with the same signature; peer methods not implemented here return 0, false or null.
+ */
+public class FixedPeer implements InvocationHandler {
+
+    private static final Map<Method, Method> METHODS = Collections.synchronizedMap(new HashMap<Method, Method>());
+    private static final Method UNSUPPORTED;
+
+    static {
+        try {
+            UNSUPPORTED = Object.class.getMethod("hashCode");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public String name = "bench";
+    public long time;
+    public double x, y;
+    public double heading, gunHeading, radarHeading;
+    public double velocity;
+    public double energy = 100;
+    public double gunHeat;
+    public double distanceRemaining, turnRemaining;
+    public double width, height;
+    public int others;
+
+    private final Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Method target = METHODS.get(method);
+        if (target == null) {
+            try {
+                target = FixedPeer.class.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                target = UNSUPPORTED;
+            }
+            METHODS.put(method, target);
+        }
+        if (target == UNSUPPORTED) {
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) {
+                return false;
+            } else if (type == int.class) {
+                return 0;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == double.class) {
+                return 0.;
+            }
+            return null;
+        }
+        try {
+            return target.invoke(this, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getBodyHeading() {
+        return heading;
+    }
+
+    public double getGunHeading() {
+        return gunHeading;
+    }
+
+    public double getRadarHeading() {
+        return radarHeading;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getGunHeat() {
+        return gunHeat;
+    }
+
+    public double getDistanceRemaining() {
+        return distanceRemaining;
+    }
+
+    public double getBodyTurnRemaining() {
+        return turnRemaining;
+    }
+
+    public double getGunCoolingRate() {
+        return 0.1;
+    }
+
+    public double getBattleFieldWidth() {
+        return width;
+    }
+
+    public double getBattleFieldHeight() {
+        return height;
+    }
+
+    public int getOthers() {
+        return others;
+    }
+
+    public Graphics2D getGraphics() {
+        return graphics;
+    }
+
+    public File getDataFile(String filename) {
+        return new File(System.getProperty("java.io.tmpdir"), filename);
+    }
+}
@@ -0,0 +1,125 @@
+package pbn.bench;
+
+import robocode.AdvancedRobot;
+import robocode.ScannedRobotEvent;
+import robocode.robotinterfaces.peer.IAdvancedRobotPeer;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * Parameters of one benchmark run, with helpers to build robots and scans. The random generator is seeded, so
+ * every run over the same parameters builds the same state.
+ */
+public class Fixture {
+
+    public static final long START_TIME = 100;
+
+    public final int enemies;
+    public final double width, height;
+    public final Random random = new Random(42);
+
+    public Fixture(int enemies, double width, double height) {
+        this.enemies = enemies;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Attach a fixed peer to a robot, placed in the middle of the field at {@link #START_TIME}
+     */
+    public FixedPeer attach(AdvancedRobot robot) {
+        FixedPeer peer = new FixedPeer();
+        peer.width = width;
+        peer.height = height;
+        peer.x = width / 2;
+        peer.y = height / 2;
+        peer.others = enemies;
+        peer.time = START_TIME;
+        robot.setPeer((IAdvancedRobotPeer) Proxy.newProxyInstance(Fixture.class.getClassLoader(),
+                new Class<?>[]{IAdvancedRobotPeer.class}, peer));
+        return peer;
+    }
+
+    public String enemyName(int i) {
+        return "enemy" + i;
+    }
+
+    /**
+     * Receives the scans of {@link #scanTwice}, e.g. the onScannedRobot of a robot
+     */
+    public interface ScanHandler {
+        void onScannedRobot(ScannedRobotEvent event);
+    }
+
+    /**
+     * Scan every enemy at a random position at {@link #START_TIME} - 1, and again one tick later as {@link #next}
+     * moves it, one enemy after the other
+     *
+     * @param energyDrop energy every enemy loses between its two scans, e.g. to be taken for a shot
+     * @return the names of the enemies
+     */
+    public String[] scanTwice(FixedPeer me, double energyDrop, ScanHandler handler) {
+        ScannedRobotEvent[] first = scans(me, START_TIME - 1, 100);
+        ScannedRobotEvent[] second = next(first, me);
+        String[] names = new String[enemies];
+        for (int i = 0; i < enemies; i++) {
+            handler.onScannedRobot(first[i]);
+            ScannedRobotEvent scan = second[i];
+            if (energyDrop != 0) {
+                scan = new ScannedRobotEvent(scan.getName(), scan.getEnergy() - energyDrop, scan.getBearingRadians(),
+                        scan.getDistance(), scan.getHeadingRadians(), scan.getVelocity(), false);
+                scan.setTime(second[i].getTime());
+            }
+            handler.onScannedRobot(scan);
+            names[i] = scan.getName();
+        }
+        return names;
+    }
+
+    /**
+     * Scans of every enemy at a random position, heading and velocity, seen from the given robot
+     */
+    public ScannedRobotEvent[] scans(FixedPeer me, long time, double energy) {
+        ScannedRobotEvent[] scans = new ScannedRobotEvent[enemies];
+        for (int i = 0; i < enemies; i++) {
+            double x = 18 + random.nextDouble() * (width - 36);
+            double y = 18 + random.nextDouble() * (height - 36);
+            double dX = x - me.x;
+            double dY = y - me.y;
+            scans[i] = new ScannedRobotEvent(enemyName(i), energy, normalRelativeAngle(atan2(dX, dY) - me.heading),
+                    sqrt(dX * dX + dY * dY), random.nextDouble() * 2 * PI, 8 * random.nextDouble() - 4, false);
+            scans[i].setTime(time);
+        }
+        return scans;
+    }
+
+    /**
+     * The next scans of the same enemies, one tick later, turning at up to the maximum rate
+     */
+    public ScannedRobotEvent[] next(ScannedRobotEvent[] previous, FixedPeer me) {
+        ScannedRobotEvent[] scans = new ScannedRobotEvent[previous.length];
+        for (int i = 0; i < previous.length; i++) {
+            ScannedRobotEvent scan = previous[i];
+            double bearing = me.heading + scan.getBearingRadians();
+            double heading = scan.getHeadingRadians() + toRadians(20 * random.nextDouble() - 10);
+            double x = me.x + scan.getDistance() * sin(bearing) + scan.getVelocity() * sin(heading);
+            double y = me.y + scan.getDistance() * cos(bearing) + scan.getVelocity() * cos(heading);
+            double dX = x - me.x;
+            double dY = y - me.y;
+            scans[i] = new ScannedRobotEvent(scan.getName(), scan.getEnergy(),
+                    normalRelativeAngle(atan2(dX, dY) - me.heading), sqrt(dX * dX + dY * dY), heading,
+                    scan.getVelocity(), false);
+            scans[i].setTime(scan.getTime() + 1);
+        }
+        return scans;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("enemies=%d field=%.0fx%.0f", enemies, width, height);
+    }
+}
@@ -0,0 +1,335 @@
+package pbn.internals;
+
+import pbn.bench.AdvanceBenchmark;
+import pbn.bench.Benchmark;
+import pbn.bench.FixedPeer;
+import pbn.bench.Fixture;
+import robocode.AdvancedRobot;
+import robocode.Rules;
+import robocode.ScannedRobotEvent;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.atan2;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * Benchmarks of the shared subsystems used by Pwnator2000
+ */
+public class InternalsBenchmarks {
+
+    private static final int DESTINATIONS = 64;
+
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (int dt : AdvanceBenchmark.TICKS) {
+            benchmarks.add(new AdvanceBenchmark<Track>("internals.Recording.advance", dt, new Scanned()));
+        }
+        benchmarks.add(new ShootingSolutionBenchmark());
+        benchmarks.add(new PatternGunBenchmark());
+        benchmarks.add(new KdTreeBenchmark(false));
+        benchmarks.add(new KdTreeBenchmark(true));
+        benchmarks.add(new NavigationArcBenchmark());
+        benchmarks.add(new FiringPositionBenchmark());
+        benchmarks.add(new MovementPredictorBenchmark());
+        benchmarks.add(new RadarBenchmark());
+        return benchmarks;
+    }
+
+    /**
+     * A robot with a track of two recordings of every enemy
+     */
+    static class Scanned implements AdvanceBenchmark.Subject<Track> {
+        AdvancedRobot robot;
+        FixedPeer peer;
+
+        @Override
+        public Track[] scan(Fixture fixture) {
+            robot = new AdvancedRobot();
+            peer = fixture.attach(robot);
+            final Map<String, Track> byName = new HashMap<String, Track>();
+            String[] names = fixture.scanTwice(peer, 0, new Fixture.ScanHandler() {
+                @Override
+                public void onScannedRobot(ScannedRobotEvent event) {
+                    Track track = byName.get(event.getName());
+                    if (track == null) {
+                        track = new Track();
+                        byName.put(event.getName(), track);
+                    }
+                    track.add(Recording.record(robot, event, track.top()));
+                }
+            });
+            Track[] tracks = new Track[names.length];
+            for (int i = 0; i < tracks.length; i++) {
+                tracks[i] = byName.get(names[i]);
+            }
+            return tracks;
+        }
+
+        @Override
+        public double advance(Track track, int ticks) {
+            Recording recording = track.top();
+            return recording.advance(recording.time + ticks).getX();
+        }
+    }
+
+    private static abstract class TrackBenchmark extends Benchmark {
+        AdvancedRobot robot;
+        FixedPeer peer;
+        Track[] tracks;
+
+        TrackBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            Scanned scanned = new Scanned();
+            tracks = scanned.scan(fixture);
+            robot = scanned.robot;
+            peer = scanned.peer;
+        }
+    }
+
+    static class ShootingSolutionBenchmark extends TrackBenchmark {
+        private TargetingComputer targetingComputer;
+
+        ShootingSolutionBenchmark() {
+            super("TargetingComputer.getShootingSolution");
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            targetingComputer = new TargetingComputer(robot);
+        }
+
+        @Override
+        public double run(int i) {
+            Point2D firingPoint = new Point2D.Double(peer.x, peer.y);
+            ShootingSolution solution = targetingComputer.getShootingSolution(tracks[i % tracks.length], firingPoint,
+                    Fixture.START_TIME + 1 + (i & 15));
+            return solution == null ? 0 : solution.getAbsoluteShotHeading();
+        }
+    }
+
+    /**
+     * Pattern gun over a full track of every enemy oscillating in place with a period of its own, so every aim is a
+     * match
+     */
+    static class PatternGunBenchmark extends TrackBenchmark {
+        private static final int HISTORY = Track.DEFAULT_CAPACITY;
+        private static final int MAX_REPLAY = 150;
+        private PatternGun patternGun;
+
+        PatternGunBenchmark() {
+            super("PatternGun.getShootingSolution history=" + HISTORY);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            patternGun = new PatternGun(robot, new TargetingComputer(robot));
+            for (int i = 0; i < tracks.length; i++) {
+                Recording top = tracks[i].top();
+                double bearing = normalRelativeAngle(
+                        atan2(top.position.getX() - peer.x, top.position.getY() - peer.y) - peer.heading);
+                double distance = top.distance(robot);
+                int period = 10 + fixture.random.nextInt(30);
+                Track track = new Track();
+                for (int t = 0; t < HISTORY; t++) {
+                    ScannedRobotEvent scan = new ScannedRobotEvent(top.name, top.energy, bearing, distance,
+                            top.headingRadians, (t / period) % 2 == 0 ? 8 : -8, false);
+                    scan.setTime(top.time - HISTORY + 1 + t);
+                    track.add(Recording.record(robot, scan, track.top()));
+                }
+                tracks[i] = track;
+                patternGun.record(track);
+                if (patternGun.matcher(track).match(MAX_REPLAY) < 0) {
+                    throw new IllegalStateException("No match in the periodic history of " + top.name);
+                }
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            Point2D firingPoint = new Point2D.Double(peer.x, peer.y);
+            ShootingSolution solution = patternGun.getShootingSolution(tracks[i % tracks.length], firingPoint,
+                    Fixture.START_TIME + 1 + (i & 15));
+            return solution == null ? 0 : solution.getAbsoluteShotHeading();
+        }
+    }
+
+    /**
+     * Nearest neighbours of random situations in a full tree, or adding a point to it, evicting the oldest
+     */
+    static class KdTreeBenchmark extends Benchmark {
+        private static final double[] WEIGHTS = {4, 2, 1, 2, 2, 1};
+        private static final int POINTS = 20000;
+        private static final int K = 32;
+        private static final int QUERIES = 256;
+        private final boolean add;
+        private KdTree tree;
+        private double[][] queries;
+
+        KdTreeBenchmark(boolean add) {
+            super("KdTree." + (add ? "add" : "nearest k=" + K) + " points=" + POINTS);
+            this.add = add;
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            tree = new KdTree(WEIGHTS, POINTS, K);
+            double[] point = new double[WEIGHTS.length];
+            for (int i = 0; i < POINTS; i++) {
+                random(fixture, point);
+                tree.add(point, fixture.random.nextDouble() * 2 - 1);
+            }
+            queries = new double[QUERIES][WEIGHTS.length];
+            for (double[] query : queries) {
+                random(fixture, query);
+            }
+        }
+
+        private static void random(Fixture fixture, double[] point) {
+            for (int d = 0; d < point.length; d++) {
+                point[d] = fixture.random.nextDouble();
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            double[] query = queries[i & (QUERIES - 1)];
+            if (add) {
+                tree.add(query, 0);
+                return tree.size();
+            }
+            return tree.nearest(query, K) == 0 ? 0 : tree.value(0);
+        }
+    }
+
+    private static abstract class DrivingBenchmark extends Benchmark {
+        FixedPeer peer;
+        DrivingComputer drivingComputer;
+        Point2D[] destinations;
+
+        DrivingBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            AdvancedRobot robot = new AdvancedRobot();
+            peer = fixture.attach(robot);
+            drivingComputer = new DrivingComputer(robot, new Log(robot, Log.OFF, 16, 10),
+                    new TickProfiler(robot, false, 10));
+            destinations = new Point2D[DESTINATIONS];
+            for (int i = 0; i < destinations.length; i++) {
+                destinations[i] = new Point2D.Double(fixture.random.nextDouble() * fixture.width,
+                        fixture.random.nextDouble() * fixture.height);
+            }
+        }
+    }
+
+    static class NavigationArcBenchmark extends DrivingBenchmark {
+
+        NavigationArcBenchmark() {
+            super("DrivingComputer.computeNavigationArc");
+        }
+
+        @Override
+        public double run(int i) {
+            Point2D from = new Point2D.Double(peer.x, peer.y);
+            return drivingComputer.computeNavigationArc(from, destinations[i & (DESTINATIONS - 1)]).distance;
+        }
+    }
+
+    /**
+     * A scan of one enemy after another, each followed by the radar turn of the tick
+     */
+    static class RadarBenchmark extends TrackBenchmark {
+        private Radar radar;
+
+        RadarBenchmark() {
+            super("Radar.scanned+sweep");
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            radar = new Radar(robot);
+            for (Track track : tracks) {
+                radar.scanned(track.top().name, track.top(), track.top().time);
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            Recording recording = tracks[i % tracks.length].top();
+            radar.scanned(recording.name, recording, recording.time + i);
+            radar.sweep();
+            return radar.size();
+        }
+    }
+
+    /**
+     * A hundred ticks of movement under random orders, as when weighing candidate moves
+     */
+    static class MovementPredictorBenchmark extends Benchmark {
+        private static final int TICKS = 100;
+        private static final int ORDERS = 64;
+        private MovementPredictor predictor;
+        private double[] distances;
+        private double[] turns;
+        private double x, y;
+
+        MovementPredictorBenchmark() {
+            super("MovementPredictor.predict ticks=" + TICKS);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            predictor = new MovementPredictor(fixture.width, fixture.height, TICKS);
+            distances = new double[ORDERS];
+            turns = new double[ORDERS];
+            for (int i = 0; i < ORDERS; i++) {
+                distances[i] = (fixture.random.nextDouble() - .5) * 1000;
+                turns[i] = (fixture.random.nextDouble() - .5) * 2 * Math.PI;
+            }
+            x = fixture.width / 2;
+            y = fixture.height / 2;
+        }
+
+        @Override
+        public double run(int i) {
+            int order = i & (ORDERS - 1);
+            int ticks = predictor.predict(x, y, 0, 8, distances[order], turns[order], Rules.MAX_VELOCITY,
+                    Rules.MAX_TURN_RATE_RADIANS, TICKS);
+            return predictor.x(ticks);
+        }
+    }
+
+    static class FiringPositionBenchmark extends DrivingBenchmark {
+
+        FiringPositionBenchmark() {
+            super("DrivingComputer.getFiringPosition");
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            peer.velocity = 8;
+            peer.distanceRemaining = 300;
+            peer.turnRemaining = 1;
+        }
+
+        @Override
+        public double run(int i) {
+            return drivingComputer.getFiringPosition(1 + (i & 15)).getX();
+        }
+    }
+}
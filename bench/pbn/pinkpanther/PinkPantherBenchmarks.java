@@ -0,0 +1,111 @@
+package pbn.pinkpanther;
+
+import pbn.bench.AdvanceBenchmark;
+import pbn.bench.Benchmark;
+import pbn.bench.FixedPeer;
+import pbn.bench.Fixture;
+import robocode.ScannedRobotEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of PinkPanther's hot paths
+ */
+public class PinkPantherBenchmarks {
+
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (int dt : AdvanceBenchmark.TICKS) {
+            benchmarks.add(new AdvanceBenchmark<Recording>("pinkpanther.Recording.advance", dt, new Scanned()));
+        }
+        benchmarks.add(new ComputeSolutionBenchmark());
+        benchmarks.add(new SurfBenchmark());
+        return benchmarks;
+    }
+
+    /**
+     * A PinkPanther that has scanned every enemy twice
+     */
+    static class Scanned implements AdvanceBenchmark.Subject<Recording> {
+        PinkPanther robot;
+        FixedPeer peer;
+
+        @Override
+        public Recording[] scan(Fixture fixture) {
+            robot = new PinkPanther();
+            peer = fixture.attach(robot);
+            robot.initialize();
+            String[] names = fixture.scanTwice(peer, 0, new Fixture.ScanHandler() {
+                @Override
+                public void onScannedRobot(ScannedRobotEvent event) {
+                    robot.onScannedRobot(event);
+                }
+            });
+            Recording[] recordings = new Recording[names.length];
+            for (int i = 0; i < recordings.length; i++) {
+                recordings[i] = PinkPanther.tracks.get(names[i]);
+            }
+            PinkPanther.targets.refresh(peer.time, peer.x, peer.y);
+            return recordings;
+        }
+
+        @Override
+        public double advance(Recording recording, int ticks) {
+            return recording.advance(recording.time + ticks).getX();
+        }
+    }
+
+    private static abstract class ScannedBenchmark extends Benchmark {
+        PinkPanther robot;
+        FixedPeer peer;
+        Recording[] recordings;
+
+        ScannedBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            Scanned scanned = new Scanned();
+            recordings = scanned.scan(fixture);
+            robot = scanned.robot;
+            peer = scanned.peer;
+        }
+    }
+
+    static class ComputeSolutionBenchmark extends ScannedBenchmark {
+
+        ComputeSolutionBenchmark() {
+            super("PinkPanther.computeSolution");
+        }
+
+        @Override
+        public double run(int i) {
+            double[] solution = robot.computeSolution(Fixture.START_TIME + 1 + (i & 15), recordings[i % recordings.length]);
+            return solution == null ? 0 : solution[1];
+        }
+    }
+
+    static class SurfBenchmark extends ScannedBenchmark {
+
+        SurfBenchmark() {
+            super("WaveSurfer.surf");
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            //every enemy just fired at us
+            for (Recording recording : recordings) {
+                PinkPanther.surfer.fired(recording.name, recording.position.getX(), recording.position.getY(),
+                        peer.time - 1, 2);
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            return PinkPanther.surfer.surf() ? PinkPanther.surfer.size() : 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package pbn.poseidon;
+
+import pbn.bench.AdvanceBenchmark;
+import pbn.bench.Benchmark;
+import pbn.bench.FixedPeer;
+import pbn.bench.Fixture;
+import pbn.internals.SegmentedHistogram;
+import robocode.Rules;
+import robocode.ScannedRobotEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.*;
+
+/**
+ * Benchmarks of Poseidon's hot paths
+ */
+public class PoseidonBenchmarks {
+
+    private static final int[] WAVE_COUNTS = {100, 1000, 10000};
+
+    public static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (int dt : AdvanceBenchmark.TICKS) {
+            benchmarks.add(new AdvanceBenchmark<Recording>("poseidon.Recording.advance", dt, new Scanned()));
+        }
+        benchmarks.add(new ForceFieldBenchmark());
+        for (int waves : WAVE_COUNTS) {
+            benchmarks.add(new CheckBreakBenchmark(waves));
+        }
+        for (int waves : WAVE_COUNTS) {
+            benchmarks.add(new WaveStoreBenchmark(waves));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * A Poseidon that has scanned every enemy twice. The enemies lost energy in between, so each is assumed to have
+     * fired a bullet.
+     */
+    static class Scanned implements AdvanceBenchmark.Subject<Recording> {
+        Poseidon robot;
+        FixedPeer peer;
+
+        @Override
+        public Recording[] scan(Fixture fixture) {
+            robot = new Poseidon();
+            peer = fixture.attach(robot);
+            robot.initialize();
+            String[] names = fixture.scanTwice(peer, 2, new Fixture.ScanHandler() {
+                @Override
+                public void onScannedRobot(ScannedRobotEvent event) {
+                    robot.onScannedRobot(event);
+                }
+            });
+            Recording[] recordings = new Recording[names.length];
+            for (int i = 0; i < recordings.length; i++) {
+                recordings[i] = Poseidon.tracks.get(names[i]);
+            }
+            return recordings;
+        }
+
+        @Override
+        public double advance(Recording recording, int ticks) {
+            return recording.advance(recording.time + ticks).getX();
+        }
+    }
+
+    /**
+     * A {@link Scanned} Poseidon, with statistics to aim waves with
+     */
+    private static abstract class ScannedBenchmark extends Benchmark {
+        Poseidon robot;
+        FixedPeer peer;
+        Recording[] recordings;
+        SegmentedHistogram stats;
+        Random random;
+
+        ScannedBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            Scanned scanned = new Scanned();
+            recordings = scanned.scan(fixture);
+            robot = scanned.robot;
+            peer = scanned.peer;
+            random = fixture.random;
+            stats = new SegmentedHistogram(Poseidon.GF_SEGMENTS, Poseidon.GF_BINS, Poseidon.GF_DECAY);
+        }
+
+        /**
+         * Set up a wave fired at a random enemy, from a random point 100 to 800 pixels away from it
+         */
+        void aim(Wave wave, long time) {
+            Recording target = recordings[random.nextInt(recordings.length)];
+            double distance = 100 + 700 * random.nextDouble();
+            double angle = random.nextDouble() * 2 * PI;
+            double originX = target.x(time) + distance * sin(angle);
+            double originY = target.y(time) + distance * cos(angle);
+            int power = random.nextInt(Poseidon.powers.length);
+            wave.set(originX, originY, angle + PI, Rules.getBulletSpeed(Poseidon.powers[power]), time, target.name,
+                    target.direction, stats, stats.offset((int) abs(target.velocity), power));
+        }
+    }
+
+    static class ForceFieldBenchmark extends ScannedBenchmark {
+
+        ForceFieldBenchmark() {
+            super("Poseidon.updateForceField");
+        }
+
+        @Override
+        public double run(int i) {
+            robot.updateForceField();
+            return Poseidon.forceField.getTotalX();
+        }
+    }
+
+    /**
+     * Check a list of waves fired at different times against the enemies at one point in time
+     */
+    static class CheckBreakBenchmark extends ScannedBenchmark {
+        private final int count;
+        private Wave[] waves;
+
+        CheckBreakBenchmark(int count) {
+            super("Wave.checkBreak waves=" + count);
+            this.count = count;
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            waves = new Wave[count];
+            for (int i = 0; i < count; i++) {
+                waves[i] = new Wave();
+                aim(waves[i], Fixture.START_TIME - random.nextInt(40));
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            int broken = 0;
+            for (Wave wave : waves) {
+                if (wave.checkBreak(Poseidon.tracks, Fixture.START_TIME)) {
+                    broken++;
+                }
+            }
+            return broken;
+        }
+    }
+
+    /**
+     * Process the store tick by tick, replacing the waves that broke with new ones to keep its size constant
+     */
+    static class WaveStoreBenchmark extends ScannedBenchmark {
+        private final int count;
+        private WaveStore store;
+        private long time;
+
+        WaveStoreBenchmark(int count) {
+            super("WaveStore.process waves=" + count);
+            this.count = count;
+        }
+
+        @Override
+        public void setUp(Fixture fixture) {
+            super.setUp(fixture);
+            store = new WaveStore(7);
+            time = Fixture.START_TIME;
+            refill();
+        }
+
+        private void refill() {
+            while (store.size() < count) {
+                Wave wave = store.obtain();
+                aim(wave, time);
+                Recording target = Poseidon.tracks.get(wave.target);
+                double distance = hypot(target.x(time) - wave.originX, target.y(time) - wave.originY);
+                store.add(wave, wave.earliestBreak(time, distance));
+            }
+        }
+
+        @Override
+        public double run(int i) {
+            time++;
+            int checked = store.process(Poseidon.tracks, time);
+            refill();
+            return checked;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package pbn.sim;
+
+import pbn.internals.Physics;
+import robocode.*;
+import robocode.robotinterfaces.peer.IAdvancedRobotPeer;
+
+import java.awt.geom.Line2D;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalAbsoluteAngle;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * A headless battle between robot classes, run turn by turn at full speed.
+ * <p/>
+ * Each turn every running robot gets the CPU in turn until it calls execute, which is timed. Then bullets and robots
+ * are moved following the Robocode rules, radars scan, and the resulting events are queued for the next turn.
+ * Simplifications: bounding boxes are compared as 36x36 squares, scans approximate the bounding box by its
+ * circumscribed circle, and robots without energy are removed rather than disabled.
+ */
+public class Battle {
+
+    private static final double SCAN_HALF_WIDTH = SimulatedRobot.HALF_SIZE * sqrt(2);
+
+    final double width, height;
+    final int rounds;
+    final double gunCoolingRate = 0.1;
+    private final int maxTurns;
+    private final long cpuNanos;
+    private final long seed;
+    private final boolean verbose;
+    private final Random random;
+
+    private final List<String> classNames;
+    private final List<String> names = new ArrayList<String>();
+    private final List<ClassLoader> loaders = new ArrayList<ClassLoader>();
+    private final double[] wallStop = new double[2];
+    private final List<TickStats> stats = new ArrayList<TickStats>();
+
+    private final List<SimulatedRobot> robots = new ArrayList<SimulatedRobot>();
+    private final List<SimulatedBullet> bullets = new ArrayList<SimulatedBullet>();
+    private int bulletIds;
+
+    long time;
+    int round;
+
+    /**
+     * @param classNames robot classes, one robot per entry
+     * @param cpuNanos   turns taking longer than this are flagged as skipped, and the robot gets a SkippedTurnEvent
+     */
+    public Battle(List<String> classNames, double width, double height, int rounds, int maxTurns, long cpuNanos,
+                  long seed, boolean verbose) {
+        this.classNames = classNames;
+        this.width = width;
+        this.height = height;
+        this.rounds = rounds;
+        this.maxTurns = maxTurns;
+        this.cpuNanos = cpuNanos;
+        this.seed = seed;
+        this.verbose = verbose;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Fight all rounds. Every robot gets its own class loader, kept for the whole battle, so static fields behave
+     * as in Robocode: shared between rounds, but not between robots.
+     */
+    public void run() throws Exception {
+        for (int i = 0; i < classNames.size(); i++) {
+            String className = classNames.get(i);
+            int duplicates = Collections.frequency(classNames.subList(0, i), className);
+            boolean unique = Collections.frequency(classNames, className) == 1;
+            names.add(unique ? className : className + " (" + (duplicates + 1) + ")");
+            ClassLoader loader = RobotClassLoader.create(Battle.class.getClassLoader());
+            seedRobot(loader, seed * 31 + i);
+            loaders.add(loader);
+            stats.add(new TickStats(names.get(i), cpuNanos));
+        }
+        for (round = 0; round < rounds; round++) {
+            runRound();
+        }
+    }
+
+    /**
+     * Make the robot's randomness reproducible, if it uses {@code pbn.internals.RandomSource}
+     */
+    private static void seedRobot(ClassLoader loader, long seed) throws Exception {
+        try {
+            loader.loadClass("pbn.internals.RandomSource").getMethod("seed", long.class).invoke(null, seed);
+        } catch (ClassNotFoundException ignored) {
+        }
+    }
+
+    private void runRound() throws Exception {
+        time = 0;
+        robots.clear();
+        bullets.clear();
+        for (int i = 0; i < classNames.size(); i++) {
+            robots.add(createRobot(i));
+        }
+        for (SimulatedRobot robot : robots) {
+            robot.start();
+        }
+        turn();
+        while (true) {
+            time++;
+            update();
+            if (aliveCount() <= 1 || time >= maxTurns) {
+                break;
+            }
+            turn();
+        }
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive && aliveCount() == 1) {
+                robot.addEvent(new WinEvent());
+            }
+            robot.addEvent(new RoundEndedEvent(round, (int) time, (int) time));
+            robot.stop();
+        }
+    }
+
+    private SimulatedRobot createRobot(int index) throws Exception {
+        Class<?> type = loaders.get(index).loadClass(classNames.get(index));
+        AdvancedRobot robot;
+        try {
+            robot = (AdvancedRobot) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot instantiate robot " + classNames.get(index), e);
+        }
+        String name = names.get(index);
+        PrintStream out = verbose ? new PrefixStream(name, System.out) : new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        File dataDirectory = new File(System.getProperty("java.io.tmpdir"), "pbn-sim/" + classNames.get(index));
+        SimulatedRobot simulated = new SimulatedRobot(this, name, robot, out, dataDirectory);
+        robot.setPeer((IAdvancedRobotPeer) Proxy.newProxyInstance(Battle.class.getClassLoader(),
+                new Class<?>[]{IAdvancedRobotPeer.class}, simulated));
+        robot.setOut(out);
+
+        //random, non overlapping start positions
+        double x, y;
+        boolean free;
+        do {
+            x = SimulatedRobot.HALF_SIZE + random.nextDouble() * (width - 2 * SimulatedRobot.HALF_SIZE);
+            y = SimulatedRobot.HALF_SIZE + random.nextDouble() * (height - 2 * SimulatedRobot.HALF_SIZE);
+            free = true;
+            for (SimulatedRobot other : robots) {
+                free &= abs(other.x - x) > 2 * SimulatedRobot.HALF_SIZE || abs(other.y - y) > 2 * SimulatedRobot.HALF_SIZE;
+            }
+        } while (!free);
+        simulated.place(x, y, random.nextDouble() * 2 * PI);
+        return simulated;
+    }
+
+    /**
+     * Give every running robot its turn, in a random order as the engine does, and time it
+     */
+    private void turn() {
+        List<SimulatedRobot> order = new ArrayList<SimulatedRobot>(robots);
+        Collections.shuffle(order, random);
+        for (SimulatedRobot robot : order) {
+            if (!robot.alive) {
+                continue;
+            }
+            long nanos = robot.takeTurn();
+            if (nanos >= 0 && time > 0) {
+                stats.get(robots.indexOf(robot)).record(round, time, nanos);
+                if (nanos > cpuNanos) {
+                    //the engine would skip the robot's next turn; only tell it, so runs stay comparable
+                    robot.addEvent(new SkippedTurnEvent(time + 1));
+                }
+            }
+        }
+    }
+
+    private void update() {
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive) {
+                Bullet bullet = robot.fireBullet();
+                if (bullet != null) {
+                    bullets.add(new SimulatedBullet(robot, bullet));
+                }
+            }
+        }
+        updateBullets();
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive) {
+                double lastX = robot.x;
+                double lastY = robot.y;
+                robot.update();
+                checkWallCollision(robot);
+                checkRobotCollisions(robot, lastX, lastY);
+            }
+        }
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive && robot.energy <= 0) {
+                kill(robot);
+            }
+        }
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive) {
+                scan(robot);
+                robot.addEvent(new StatusEvent(null));
+            }
+        }
+    }
+
+    private void updateBullets() {
+        for (SimulatedBullet bullet : bullets) {
+            bullet.move();
+        }
+        for (int i = 0; i < bullets.size(); i++) {
+            SimulatedBullet bullet = bullets.get(i);
+            if (!bullet.active) {
+                continue;
+            }
+            for (SimulatedRobot victim : robots) {
+                if (victim.alive && victim != bullet.owner && victim.energy > 0
+                        && victim.bounds.intersectsLine(bullet.lastX, bullet.lastY, bullet.x, bullet.y)) {
+                    hit(bullet, victim);
+                    break;
+                }
+            }
+            for (int j = i + 1; j < bullets.size() && bullet.active; j++) {
+                SimulatedBullet other = bullets.get(j);
+                if (other.active && Line2D.linesIntersect(bullet.lastX, bullet.lastY, bullet.x, bullet.y,
+                        other.lastX, other.lastY, other.x, other.y)) {
+                    bullet.active = false;
+                    other.active = false;
+                    bullet.owner.addEvent(new BulletHitBulletEvent(bullet.bullet, other.bullet));
+                    other.owner.addEvent(new BulletHitBulletEvent(other.bullet, bullet.bullet));
+                }
+            }
+            if (bullet.active && (bullet.x < 0 || bullet.y < 0 || bullet.x > width || bullet.y > height)) {
+                bullet.active = false;
+                bullet.owner.addEvent(new BulletMissedEvent(bullet.bullet));
+            }
+        }
+        for (Iterator<SimulatedBullet> iterator = bullets.iterator(); iterator.hasNext(); ) {
+            if (!iterator.next().active) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void hit(SimulatedBullet bullet, SimulatedRobot victim) {
+        double power = bullet.bullet.getPower();
+        bullet.active = false;
+        victim.damage(Rules.getBulletDamage(power));
+        if (bullet.owner.alive) {
+            bullet.owner.energy += Rules.getBulletHitBonus(power);
+        }
+        bullet.owner.addEvent(new BulletHitEvent(victim.name, max(0, victim.energy), bullet.bullet));
+        victim.addEvent(new HitByBulletEvent(normalRelativeAngle(bullet.heading + PI - victim.heading), bullet.bullet));
+    }
+
+    private void checkWallCollision(SimulatedRobot robot) {
+        double wallAngle = Physics.stopAtWall(robot.x, robot.y, robot.heading, width, height, wallStop);
+        if (Double.isNaN(wallAngle)) {
+            return;
+        }
+        robot.damage(Rules.getWallHitDamage(robot.velocity));
+        robot.addEvent(new HitWallEvent(normalRelativeAngle(wallAngle - robot.heading)));
+        robot.halt(wallStop[0], wallStop[1]);
+    }
+
+    private void checkRobotCollisions(SimulatedRobot robot, double lastX, double lastY) {
+        for (SimulatedRobot other : robots) {
+            if (other == robot || !other.alive || !robot.bounds.intersects(other.bounds)) {
+                continue;
+            }
+            double angle = atan2(other.x - robot.x, other.y - robot.y);
+            double bearing = normalRelativeAngle(angle - robot.heading);
+            boolean atFault = (robot.velocity > 0 && abs(bearing) < PI / 2) || (robot.velocity < 0 && abs(bearing) > PI / 2);
+            if (atFault) {
+                robot.halt(lastX, lastY);
+            }
+            robot.damage(Rules.ROBOT_HIT_DAMAGE);
+            other.damage(Rules.ROBOT_HIT_DAMAGE);
+            robot.addEvent(new HitRobotEvent(other.name, bearing, other.energy, atFault));
+            other.addEvent(new HitRobotEvent(robot.name, normalRelativeAngle(angle + PI - other.heading), robot.energy, false));
+        }
+    }
+
+    private void kill(SimulatedRobot robot) {
+        robot.alive = false;
+        robot.addEvent(new DeathEvent());
+        for (SimulatedRobot other : robots) {
+            if (other.alive) {
+                other.addEvent(new RobotDeathEvent(robot.name));
+            }
+        }
+    }
+
+    /**
+     * Report every robot within the arc the radar swept this turn
+     */
+    private void scan(SimulatedRobot robot) {
+        double sweep = robot.radarSweep;
+        if (sweep == 0) {
+            return;
+        }
+        double start = normalAbsoluteAngle(robot.radarHeading - sweep);
+        for (SimulatedRobot other : robots) {
+            if (other == robot || !other.alive) {
+                continue;
+            }
+            double dX = other.x - robot.x;
+            double dY = other.y - robot.y;
+            double distance = sqrt(dX * dX + dY * dY);
+            if (distance - SCAN_HALF_WIDTH > Rules.RADAR_SCAN_RADIUS) {
+                continue;
+            }
+            double angle = atan2(dX, dY);
+            double halfWidth = asin(min(1, SCAN_HALF_WIDTH / distance));
+            double offset = normalRelativeAngle(angle - start);
+            boolean inArc = sweep > 0
+                    ? offset >= -halfWidth && offset <= sweep + halfWidth
+                    : offset <= halfWidth && offset >= sweep - halfWidth;
+            if (inArc || abs(sweep) >= 2 * PI) {
+                robot.addEvent(new ScannedRobotEvent(other.name, other.energy,
+                        normalRelativeAngle(angle - robot.heading), distance, other.heading, other.velocity, false));
+            }
+        }
+    }
+
+    int aliveCount() {
+        int alive = 0;
+        for (SimulatedRobot robot : robots) {
+            if (robot.alive) {
+                alive++;
+            }
+        }
+        return alive;
+    }
+
+    int nextBulletId() {
+        return ++bulletIds;
+    }
+
+    public List<TickStats> getStats() {
+        return stats;
+    }
+
+    /**
+     * Prefixes every line a robot prints with its name
+     */
+    private static class PrefixStream extends PrintStream {
+        private final String prefix;
+
+        PrefixStream(String name, PrintStream out) {
+            super(out, true);
+            this.prefix = "[" + name + "] ";
+        }
+
+        @Override
+        public void println(String line) {
+            super.println(prefix + line);
+        }
+
+        @Override
+        public void println(Object line) {
+            println(String.valueOf(line));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package pbn.sim;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Loads robot classes itself instead of delegating to its parent, so every robot has its own static fields.
+ * Robocode and the simulator are shared with the parent.
+ */
+class RobotClassLoader extends URLClassLoader {
+
+    private RobotClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    /**
+     * A loader over the class path of the simulator
+     */
+    static RobotClassLoader create(ClassLoader parent) throws MalformedURLException {
+        String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = new File(entries[i]).toURI().toURL();
+        }
+        return new RobotClassLoader(urls, parent);
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!name.startsWith("pbn.") || name.startsWith("pbn.sim.")) {
+            return super.loadClass(name, resolve);
+        }
+        Class<?> type = findLoadedClass(name);
+        if (type == null) {
+            try {
+                type = findClass(name);
+            } catch (ClassNotFoundException e) {
+                return super.loadClass(name, resolve);
+            }
+        }
+        if (resolve) {
+            resolveClass(type);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,37 @@
+package pbn.sim;
+
+import robocode.Bullet;
+import robocode.Rules;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+/**
+ * A bullet in flight. The {@link Bullet} handed to the robots is the one returned when it was fired.
+ */
+class SimulatedBullet {
+
+    final SimulatedRobot owner;
+    final Bullet bullet;
+    final double heading;
+    final double speed;
+    double x, y;
+    double lastX, lastY;
+    boolean active = true;
+
+    SimulatedBullet(SimulatedRobot owner, Bullet bullet) {
+        this.owner = owner;
+        this.bullet = bullet;
+        this.heading = bullet.getHeadingRadians();
+        this.speed = Rules.getBulletSpeed(bullet.getPower());
+        this.x = bullet.getX();
+        this.y = bullet.getY();
+    }
+
+    void move() {
+        lastX = x;
+        lastY = y;
+        x += speed * sin(heading);
+        y += speed * cos(heading);
+    }
+}
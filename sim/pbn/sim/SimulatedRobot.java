@@ -0,0 +1,601 @@
+package pbn.sim;
+
+import pbn.internals.Physics;
+import robocode.*;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalAbsoluteAngle;
+
+/**
+ * One robot in a simulated round, acting as the robot's peer.
+ * <p/>
+ * The robot's getters and commands reach this class through a dynamic proxy of the peer interface: calls are
+ * forwarded to the public method with the same signature, and peer methods that are not implemented here return 0,
+ * false or null. This keeps the simulator independent of the exact peer interfaces of the Robocode version used.
+ * <p/>
+ * The robot runs on its own thread. {@link #execute()} hands control back to the battle, blocks until the next turn,
+ * then dispatches the events of that turn on the robot thread, like the engine does.
+ */
+public class SimulatedRobot implements InvocationHandler {
+
+    static final double HALF_SIZE = 18;
+
+    private static final long HANG_TIMEOUT_SECONDS = 10;
+    private static final Map<Method, Method> METHODS = Collections.synchronizedMap(new HashMap<Method, Method>());
+    private static final Method UNSUPPORTED;
+
+    static {
+        try {
+            UNSUPPORTED = Object.class.getMethod("hashCode");
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Thrown on the robot thread to unwind its run method when the robot is stopped
+     */
+    static class Stopped extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    final Battle battle;
+    final String name;
+    final AdvancedRobot robot;
+    final PrintStream out;
+    private final File dataDirectory;
+    private final Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    //state
+    double x, y;
+    double heading, gunHeading, radarHeading;
+    double velocity;
+    double energy = 100;
+    double gunHeat = 3;
+    double radarSweep;
+    boolean alive = true;
+    final Rectangle2D.Double bounds = new Rectangle2D.Double();
+
+    //commands
+    private double distanceRemaining;
+    private double turnRemaining, gunTurnRemaining, radarTurnRemaining;
+    private double maxVelocity = Rules.MAX_VELOCITY;
+    private double maxTurnRate = Rules.MAX_TURN_RATE_RADIANS;
+    private boolean adjustGunForBodyTurn, adjustRadarForGunTurn, adjustRadarForBodyTurn;
+    private boolean overDriving;
+    Bullet pendingBullet;
+
+    private final List<Condition> customEvents = new ArrayList<Condition>();
+    private final List<Event> events = new ArrayList<Event>();
+
+    //turn handshake
+    private final Semaphore turn = new Semaphore(0);
+    private final Semaphore done = new Semaphore(0);
+    private volatile boolean finished;
+    private volatile boolean stopping;
+    private Thread thread;
+
+    SimulatedRobot(Battle battle, String name, AdvancedRobot robot, PrintStream out, File dataDirectory) {
+        this.battle = battle;
+        this.name = name;
+        this.robot = robot;
+        this.out = out;
+        this.dataDirectory = dataDirectory;
+    }
+
+    void place(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.gunHeading = heading;
+        this.radarHeading = heading;
+        updateBounds();
+    }
+
+    /**
+     * Start the robot thread. The robot does not run until its first turn.
+     */
+    void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    turn.acquireUninterruptibly();
+                    if (!stopping) {
+                        robot.run();
+                    }
+                } catch (Stopped ignored) {
+                } catch (Throwable t) {
+                    out.println("Robot " + name + " stopped by exception:");
+                    t.printStackTrace(out);
+                } finally {
+                    finished = true;
+                    done.release();
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Let the robot process its events and think until it calls execute, on the battle thread.
+     *
+     * @return wall time taken in nanoseconds, or -1 if the robot no longer runs
+     */
+    long takeTurn() {
+        if (finished) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        turn.release();
+        try {
+            if (!done.tryAcquire(HANG_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                out.println("Robot " + name + " did not finish its turn, giving up on it");
+                finished = true;
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Stop the robot: it gets one more turn to process its last events, then its thread unwinds
+     */
+    void stop() {
+        stopping = true;
+        takeTurn();
+    }
+
+    void addEvent(Event event) {
+        event.setTime(battle.time);
+        events.add(event);
+    }
+
+    //----------------------------------------------------------------------------------------------- engine side
+
+    /**
+     * Fire the bullet set up last turn, if the gun is still cool enough
+     */
+    Bullet fireBullet() {
+        Bullet bullet = pendingBullet;
+        pendingBullet = null;
+        if (bullet == null || gunHeat > 0 || energy <= 0) {
+            return null;
+        }
+        gunHeat = Rules.getGunHeat(bullet.getPower());
+        energy -= bullet.getPower();
+        return bullet;
+    }
+
+    /**
+     * Cool the gun, turn and move as the engine does in one turn
+     */
+    void update() {
+        gunHeat = max(0, gunHeat - battle.gunCoolingRate);
+
+        double turnRate = min(maxTurnRate, Physics.turnRate(velocity));
+        double turned = step(turnRemaining, turnRate);
+        turnRemaining -= turned;
+        heading = normalAbsoluteAngle(heading + turned);
+        double gunTurned = step(gunTurnRemaining, Rules.GUN_TURN_RATE_RADIANS);
+        gunTurnRemaining -= gunTurned;
+        if (!adjustGunForBodyTurn) {
+            gunTurned += turned;
+        }
+        gunHeading = normalAbsoluteAngle(gunHeading + gunTurned);
+        double radarTurned = step(radarTurnRemaining, Rules.RADAR_TURN_RATE_RADIANS);
+        radarTurnRemaining -= radarTurned;
+        if (!adjustRadarForGunTurn) {
+            radarTurned += gunTurned;
+        } else if (!adjustRadarForBodyTurn) {
+            radarTurned += turned;
+        }
+        radarSweep = radarTurned;
+        radarHeading = normalAbsoluteAngle(radarHeading + radarTurned);
+
+        double distance = Double.isNaN(distanceRemaining) ? 0 : distanceRemaining;
+        velocity = Physics.newVelocity(velocity, distance, maxVelocity);
+        if (velocity == 0 && overDriving) {
+            distance = 0;
+            overDriving = false;
+        }
+        if (signum(distance * velocity) != -1) {
+            overDriving = Physics.distanceUntilStop(velocity) > abs(distance);
+        }
+        distanceRemaining = distance - velocity;
+        x += velocity * sin(heading);
+        y += velocity * cos(heading);
+        updateBounds();
+    }
+
+    private static double step(double remaining, double rate) {
+        return remaining > 0 ? min(remaining, rate) : max(remaining, -rate);
+    }
+
+    /**
+     * Stop dead, e.g. after hitting a wall or a robot
+     */
+    void halt(double newX, double newY) {
+        x = newX;
+        y = newY;
+        velocity = 0;
+        distanceRemaining = 0;
+        updateBounds();
+    }
+
+    void damage(double amount) {
+        energy -= amount;
+    }
+
+    private void updateBounds() {
+        bounds.setRect(x - HALF_SIZE, y - HALF_SIZE, 2 * HALF_SIZE, 2 * HALF_SIZE);
+    }
+
+    //------------------------------------------------------------------------------------------------ robot side
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Method target = METHODS.get(method);
+        if (target == null) {
+            try {
+                target = SimulatedRobot.class.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                target = UNSUPPORTED;
+            }
+            METHODS.put(method, target);
+        }
+        if (target == UNSUPPORTED) {
+            return defaultValue(method.getReturnType());
+        }
+        try {
+            return target.invoke(this, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.;
+        }
+        return null;
+    }
+
+    public void execute() {
+        if (stopping) {
+            throw new Stopped();
+        }
+        done.release();
+        turn.acquireUninterruptibly();
+        dispatchEvents();
+        if (stopping) {
+            throw new Stopped();
+        }
+    }
+
+    private void dispatchEvents() {
+        for (Condition condition : new ArrayList<Condition>(customEvents)) {
+            if (condition.test()) {
+                addEvent(new CustomEvent(condition));
+            }
+        }
+        List<Event> current = new ArrayList<Event>(events);
+        events.clear();
+        Collections.sort(current, new Comparator<Event>() {
+            @Override
+            public int compare(Event a, Event b) {
+                return priority(b) - priority(a);
+            }
+        });
+        for (Event event : current) {
+            try {
+                dispatch(event);
+            } catch (Stopped e) {
+                throw e;
+            } catch (RuntimeException e) {
+                out.println("Exception in event handler:");
+                e.printStackTrace(out);
+            }
+        }
+    }
+
+    /**
+     * Default Robocode event priorities, higher is dispatched first
+     */
+    private static int priority(Event event) {
+        if (event instanceof DeathEvent) {
+            return 120;
+        } else if (event instanceof RoundEndedEvent) {
+            return 110;
+        } else if (event instanceof WinEvent || event instanceof SkippedTurnEvent) {
+            return 100;
+        } else if (event instanceof StatusEvent) {
+            return 99;
+        } else if (event instanceof CustomEvent) {
+            return 80;
+        } else if (event instanceof RobotDeathEvent) {
+            return 70;
+        } else if (event instanceof BulletMissedEvent) {
+            return 60;
+        } else if (event instanceof BulletHitBulletEvent) {
+            return 55;
+        } else if (event instanceof BulletHitEvent) {
+            return 50;
+        } else if (event instanceof HitRobotEvent) {
+            return 40;
+        } else if (event instanceof HitWallEvent) {
+            return 30;
+        } else if (event instanceof HitByBulletEvent) {
+            return 20;
+        }
+        return 10;
+    }
+
+    private void dispatch(Event event) {
+        if (event instanceof ScannedRobotEvent) {
+            robot.onScannedRobot((ScannedRobotEvent) event);
+        } else if (event instanceof StatusEvent) {
+            robot.onStatus((StatusEvent) event);
+        } else if (event instanceof CustomEvent) {
+            robot.onCustomEvent((CustomEvent) event);
+        } else if (event instanceof RobotDeathEvent) {
+            robot.onRobotDeath((RobotDeathEvent) event);
+        } else if (event instanceof BulletMissedEvent) {
+            robot.onBulletMissed((BulletMissedEvent) event);
+        } else if (event instanceof BulletHitBulletEvent) {
+            robot.onBulletHitBullet((BulletHitBulletEvent) event);
+        } else if (event instanceof BulletHitEvent) {
+            robot.onBulletHit((BulletHitEvent) event);
+        } else if (event instanceof HitRobotEvent) {
+            robot.onHitRobot((HitRobotEvent) event);
+        } else if (event instanceof HitWallEvent) {
+            robot.onHitWall((HitWallEvent) event);
+        } else if (event instanceof HitByBulletEvent) {
+            robot.onHitByBullet((HitByBulletEvent) event);
+        } else if (event instanceof SkippedTurnEvent) {
+            robot.onSkippedTurn((SkippedTurnEvent) event);
+        } else if (event instanceof WinEvent) {
+            robot.onWin((WinEvent) event);
+        } else if (event instanceof DeathEvent) {
+            robot.onDeath((DeathEvent) event);
+        } else if (event instanceof RoundEndedEvent) {
+            robot.onRoundEnded((RoundEndedEvent) event);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTime() {
+        return battle.time;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public double getBodyHeading() {
+        return heading;
+    }
+
+    public double getGunHeading() {
+        return gunHeading;
+    }
+
+    public double getRadarHeading() {
+        return radarHeading;
+    }
+
+    public double getGunHeat() {
+        return gunHeat;
+    }
+
+    public double getBattleFieldWidth() {
+        return battle.width;
+    }
+
+    public double getBattleFieldHeight() {
+        return battle.height;
+    }
+
+    public int getOthers() {
+        return battle.aliveCount() - (alive ? 1 : 0);
+    }
+
+    public int getNumRounds() {
+        return battle.rounds;
+    }
+
+    public int getRoundNum() {
+        return battle.round;
+    }
+
+    public double getGunCoolingRate() {
+        return battle.gunCoolingRate;
+    }
+
+    public double getDistanceRemaining() {
+        return distanceRemaining;
+    }
+
+    public double getBodyTurnRemaining() {
+        return turnRemaining;
+    }
+
+    public double getGunTurnRemaining() {
+        return gunTurnRemaining;
+    }
+
+    public double getRadarTurnRemaining() {
+        return radarTurnRemaining;
+    }
+
+    public void setMove(double distance) {
+        distanceRemaining = distance;
+    }
+
+    public void setTurnBody(double radians) {
+        turnRemaining = radians;
+    }
+
+    public void setTurnGun(double radians) {
+        gunTurnRemaining = radians;
+    }
+
+    public void setTurnRadar(double radians) {
+        radarTurnRemaining = radians;
+    }
+
+    public void setMaxVelocity(double newMaxVelocity) {
+        maxVelocity = max(0, min(Rules.MAX_VELOCITY, abs(newMaxVelocity)));
+    }
+
+    public void setMaxTurnRate(double newTurnRate) {
+        maxTurnRate = min(Rules.MAX_TURN_RATE_RADIANS, abs(newTurnRate));
+    }
+
+    public void move(double distance) {
+        setMove(distance);
+        do {
+            execute();
+        } while (distanceRemaining != 0);
+    }
+
+    public void turnBody(double radians) {
+        setTurnBody(radians);
+        do {
+            execute();
+        } while (turnRemaining != 0);
+    }
+
+    public void turnGun(double radians) {
+        setTurnGun(radians);
+        do {
+            execute();
+        } while (gunTurnRemaining != 0);
+    }
+
+    public void turnRadar(double radians) {
+        setTurnRadar(radians);
+        do {
+            execute();
+        } while (radarTurnRemaining != 0);
+    }
+
+    public Bullet setFire(double power) {
+        if (Double.isNaN(power) || gunHeat > 0 || energy <= 0) {
+            return null;
+        }
+        power = min(energy, min(max(power, Rules.MIN_BULLET_POWER), Rules.MAX_BULLET_POWER));
+        pendingBullet = new Bullet(gunHeading, x, y, power, name, null, true, battle.nextBulletId());
+        return pendingBullet;
+    }
+
+    public Bullet fire(double power) {
+        Bullet bullet = setFire(power);
+        execute();
+        return bullet;
+    }
+
+    public void waitFor(Condition condition) {
+        while (!condition.test()) {
+            execute();
+        }
+    }
+
+    public void addCustomEvent(Condition condition) {
+        customEvents.add(condition);
+    }
+
+    public void removeCustomEvent(Condition condition) {
+        customEvents.remove(condition);
+    }
+
+    public void clearAllEvents() {
+        events.clear();
+    }
+
+    public void setAdjustGunForBodyTurn(boolean adjust) {
+        adjustGunForBodyTurn = adjust;
+    }
+
+    public void setAdjustRadarForGunTurn(boolean adjust) {
+        adjustRadarForGunTurn = adjust;
+    }
+
+    public void setAdjustRadarForBodyTurn(boolean adjust) {
+        adjustRadarForBodyTurn = adjust;
+    }
+
+    public boolean isAdjustGunForBodyTurn() {
+        return adjustGunForBodyTurn;
+    }
+
+    public boolean isAdjustRadarForGunTurn() {
+        return adjustRadarForGunTurn;
+    }
+
+    public boolean isAdjustRadarForBodyTurn() {
+        return adjustRadarForBodyTurn;
+    }
+
+    public Graphics2D getGraphics() {
+        return graphics;
+    }
+
+    public File getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public File getDataFile(String filename) {
+        return new File(dataDirectory, filename);
+    }
+
+    /**
+     * No quota, so robots never write to the data directory during a simulation
+     */
+    public long getDataQuotaAvailable() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
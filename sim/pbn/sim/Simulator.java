@@ -0,0 +1,64 @@
+package pbn.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a headless battle and reports the time each robot spends per turn.
+ * <p/>
+ * Usage: {@code java -cp <robocode.jar>:<classes> pbn.sim.Simulator [options] <robot class>...}
+ * <ul>
+ * <li>{@code -width}, {@code -height}: battlefield size, default 800x600</li>
+ * <li>{@code -rounds}: number of rounds, default 10</li>
+ * <li>{@code -turns}: maximum turns per round, default 5000</li>
+ * <li>{@code -cpu}: CPU constant in milliseconds; longer turns are reported as skipped, default 1</li>
+ * <li>{@code -seed}: seed for start positions and robot randomness, default 0</li>
+ * <li>{@code -verbose}: show what the robots print</li>
+ * </ul>
+ */
+public class Simulator {
+
+    public static void main(String[] args) throws Exception {
+        double width = 800;
+        double height = 600;
+        int rounds = 10;
+        int turns = 5000;
+        double cpuMillis = 1;
+        long seed = 0;
+        boolean verbose = false;
+        List<String> robots = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-width")) {
+                width = Double.parseDouble(args[++i]);
+            } else if (arg.equals("-height")) {
+                height = Double.parseDouble(args[++i]);
+            } else if (arg.equals("-rounds")) {
+                rounds = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-turns")) {
+                turns = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-cpu")) {
+                cpuMillis = Double.parseDouble(args[++i]);
+            } else if (arg.equals("-seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (arg.equals("-verbose")) {
+                verbose = true;
+            } else {
+                robots.add(arg);
+            }
+        }
+        if (robots.size() < 2) {
+            System.err.println("Usage: Simulator [-width w] [-height h] [-rounds n] [-turns n] [-cpu ms] [-seed n] [-verbose] robot robot...");
+            System.exit(1);
+        }
+
+        Battle battle = new Battle(robots, width, height, rounds, turns, (long) (cpuMillis * 1e6), seed, verbose);
+        long start = System.nanoTime();
+        battle.run();
+        System.out.println(String.format("%d rounds on %.0fx%.0f in %.1f s, CPU constant %.2f ms",
+                rounds, width, height, (System.nanoTime() - start) / 1e9, cpuMillis));
+        for (TickStats stats : battle.getStats()) {
+            stats.print(System.out);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pbn.sim;
+
+import java.io.PrintStream;
+
+/**
+ * Wall time per turn of one robot over a battle, and the turns the engine would have skipped
+ */
+public class TickStats {
+
+    private static final int MAX_FLAGGED = 20;
+
+    private final String name;
+    private final long cpuNanos;
+    private long turns;
+    private long totalNanos;
+    private long maxNanos;
+    private long skipped;
+    private final String[] flagged = new String[MAX_FLAGGED];
+
+    TickStats(String name, long cpuNanos) {
+        this.name = name;
+        this.cpuNanos = cpuNanos;
+    }
+
+    void record(int round, long time, long nanos) {
+        turns++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        if (nanos > cpuNanos) {
+            if (skipped < MAX_FLAGGED) {
+                flagged[(int) skipped] = String.format("%d:%d (%.2f ms)", round, time, nanos / 1e6);
+            }
+            skipped++;
+        }
+    }
+
+    public long getTurns() {
+        return turns;
+    }
+
+    public double getMeanNanos() {
+        return turns == 0 ? 0 : (double) totalNanos / turns;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void print(PrintStream out) {
+        out.println(String.format("%-40s turns %8d  mean %9.1f us  max %9.1f us  skipped %6d (%.2f%%)",
+                name, turns, getMeanNanos() / 1e3, maxNanos / 1e3, skipped, turns == 0 ? 0 : 100. * skipped / turns));
+        if (skipped > 0) {
+            StringBuilder line = new StringBuilder("    skipped turns (round:time):");
+            for (int i = 0; i < Math.min(skipped, MAX_FLAGGED); i++) {
+                line.append(' ').append(flagged[i]);
+            }
+            if (skipped > MAX_FLAGGED) {
+                line.append(" ...");
+            }
+            out.println(line);
+        }
+    }
+}
@@ -22,16 +22,24 @@ public class Pwnator2000 extends AdvancedRobot
 
     private static final int RADAR_TURN_RATE = 1000;
     private static final double GUN_AIM_TIME = ceil(PI / MAX_GUN_TURN_RATE_RAD);
+    private static final boolean FAST_MATH = true;
+    private static final boolean PROFILE = false;
+    private static final int LOG_LEVEL = Log.WARN;
 
     private Tracker tracker;
+    private Radar radar;
     private TargetingComputer targetingComputer;
+    private PatternGun patternGun;
     private DrivingComputer drivingComputer;
+    private Log log;
+    private TickProfiler profiler;
+    private int trackerSection, aimSection, statusSection, paintSection;
 
-    private volatile boolean aiming = false;
+    private boolean aiming = false;
 
     private double gunCoolingRate;
-    private Map<Bullet, ShootingSolution> trackedBullets = Collections.synchronizedMap(new HashMap<Bullet,ShootingSolution>());
-    private Set<ShootingSolution> pendingSolutions = Collections.synchronizedSet(new HashSet<ShootingSolution>());
+    private Map<Bullet, ShootingSolution> trackedBullets = new HashMap<Bullet,ShootingSolution>();
+    private Set<ShootingSolution> pendingSolutions = new HashSet<ShootingSolution>();
 
 
 
@@ -41,6 +49,12 @@ public class Pwnator2000 extends AdvancedRobot
     @Override
 	public void run() {
         // Initialization of the robot should be put here
+        log = new Log(this, LOG_LEVEL, 256, 10);
+        profiler = new TickProfiler(this, PROFILE, 10);
+        trackerSection = profiler.section("Tracker.update");
+        aimSection = profiler.section("aim");
+        statusSection = profiler.section("onStatus");
+        paintSection = profiler.section("onPaint");
         out.println("Pimpin' bot!");
         double width = getWidth();
         double height = getHeight();
@@ -48,28 +62,31 @@ public class Pwnator2000 extends AdvancedRobot
 
         out.println("Started robot");
         this.tracker = new Tracker(this);
+        this.radar = new Radar(this);
         out.println("Tracking subsystem online!");
         this.targetingComputer = new TargetingComputer(this);
+        this.patternGun = new PatternGun(this, targetingComputer);
         out.println("Targeting subsystem online!");
-        this.drivingComputer = new DrivingComputer(this);
+        this.drivingComputer = new DrivingComputer(this, log, profiler);
         out.println("Driving subsystem online!");
 
         setAdjustRadarForGunTurn(true);
         setAdjustGunForRobotTurn(true);
         setAdjustRadarForRobotTurn(true);
         gunCoolingRate = getGunCoolingRate();
+        FastMath.setFast(FAST_MATH);
 
-        //set up infinite radar turn
         addCustomEvent(new AimReadyCondition());
         out.println("Aim subsystem started");
 
         out.println("Initialization done");
 
-        // Robot main loop
+        // Robot main loop: the events of the last tick were handled in execute(), plan and act on them
         //noinspection InfiniteLoopStatement
-        setTurnRadarRightRadians(Double.POSITIVE_INFINITY);
         while (true) {
+            radar.sweep();
             drivingComputer.iterate();
+            execute();
         }
     }
 
@@ -79,7 +96,9 @@ public class Pwnator2000 extends AdvancedRobot
         //switch on event
         Condition condition = event.getCondition();
         if (condition instanceof AimReadyCondition) {
+            profiler.start(aimSection);
             aim();
+            profiler.stop(aimSection);
             return;
         }
 
@@ -94,7 +113,7 @@ public class Pwnator2000 extends AdvancedRobot
     }
 
     private void onFireGunEvent(FireGunCondition fireCondition) {
-        out.println("Firing gun at time " + getTime());
+        log.debug("Firing gun at time {}", getTime());
         ShootingSolution solution = fireCondition.getShootingSolution();
         if ( solution.getShootingPosition().distance(getX(), getY()) <= 10
                 && solution.getFiringTime() >= getTime() - 1) {
@@ -108,64 +127,70 @@ public class Pwnator2000 extends AdvancedRobot
     }
 
     private void aim() {
-        out.println("setting target");
+        log.debug("setting target");
         Track currentTarget = tracker.getClosestRobotTrack();
         if (currentTarget != null ) {
             Recording target = currentTarget.top();
-            out.println("aiming for " + target);
+            log.debug("aiming for {}", target.name);
             long currentTime = getTime();
             double gunCoolingTime = ceil(getGunHeat() / gunCoolingRate);
             long shotTime = (long) (GUN_AIM_TIME + currentTime);
-            try {
-                Point2D firingPoint = drivingComputer.getFiringPosition((long) GUN_AIM_TIME);
-                ShootingSolution solution = targetingComputer.getShootingSolution(
-                        currentTarget,
-                        firingPoint,
-                        shotTime);
-                double turnRateRadians = Rules.getTurnRateRadians(getVelocity());
-                out.println("Tank turn rate is: " + toDegrees(turnRateRadians));
-                double turn = normalRelativeAngle(solution.getAbsoluteShotHeading() - getGunHeadingRadians());
-
-                double turnTime = ceil(abs(turn) / (MAX_GUN_TURN_RATE_RAD - turnRateRadians));
-                out.println("Turn time is: " + turnTime);
-                out.println("Gun cooing time is: " + gunCoolingTime);
-                long readyTime = (long) max(1, max(turnTime, ceil(gunCoolingTime)));
-                if (readyTime < GUN_AIM_TIME) {
-                    out.println("Turn will only take " + readyTime + ", recomputing shot");
-                    //aim a little closer to the mark
-                    shotTime = currentTime + readyTime;
-                    firingPoint = drivingComputer.getFiringPosition(readyTime);
-                    solution = targetingComputer.getShootingSolution(
-                            currentTarget,
-                            firingPoint,
-                            shotTime
-                    );
-                    turn = normalRelativeAngle(solution.getAbsoluteShotHeading() - getGunHeadingRadians());
-                }
-                out.println("Shooting at: " + solution);
-                out.println("Current gun heading is: " + getGunHeading());
-                out.println("Current tank heading is: " + getHeading());
-
-                out.println("Turning gun: " + toDegrees(turn));
-                aiming = true;
-                pendingSolutions.add(solution);
-                synchronized (this) {
-                    setTurnGunRightRadians(turn);
-                    addCustomEvent(new FireGunCondition(this, shotTime, solution));
+            Point2D firingPoint = drivingComputer.getFiringPosition((long) GUN_AIM_TIME);
+            ShootingSolution solution = getShootingSolution(currentTarget, firingPoint, shotTime);
+            if (solution == null) {
+                log.warn("Unable to compute solution");
+                return;
+            }
+            double turnRateRadians = Rules.getTurnRateRadians(getVelocity());
+            log.debug("Tank turn rate is: {}", toDegrees(turnRateRadians));
+            double turn = normalRelativeAngle(solution.getAbsoluteShotHeading() - getGunHeadingRadians());
+
+            double turnTime = ceil(abs(turn) / (MAX_GUN_TURN_RATE_RAD - turnRateRadians));
+            log.debug("Turn time is: {}, gun cooling time is: {}", turnTime, gunCoolingTime);
+            long readyTime = (long) max(1, max(turnTime, ceil(gunCoolingTime)));
+            if (readyTime < GUN_AIM_TIME) {
+                log.debug("Turn will only take {}, recomputing shot", readyTime);
+                //aim a little closer to the mark
+                shotTime = currentTime + readyTime;
+                firingPoint = drivingComputer.getFiringPosition(readyTime);
+                solution = getShootingSolution(currentTarget, firingPoint, shotTime);
+                if (solution == null) {
+                    log.warn("Unable to compute solution");
+                    return;
                 }
-            } catch (NoSolutionException e) {
-                out.println("Unable to compute solution: " + e.getMessage());
+                turn = normalRelativeAngle(solution.getAbsoluteShotHeading() - getGunHeadingRadians());
             }
+            log.debug("Shooting at: {}", solution);
+            log.debug("Current gun heading is: {}, tank heading is: {}", getGunHeading(), getHeading());
+            log.debug("Turning gun: {}", toDegrees(turn));
+            aiming = true;
+            pendingSolutions.add(solution);
+            setTurnGunRightRadians(turn);
+            addCustomEvent(new FireGunCondition(this, shotTime, solution));
         }
     }
 
+    /**
+     * Aim with the pattern gun, or with the targeting computer if the target's movement was not seen before
+     */
+    private ShootingSolution getShootingSolution(Track target, Point2D firingPoint, long shotTime) {
+        ShootingSolution solution = patternGun.getShootingSolution(target, firingPoint, shotTime);
+        if (solution == null) {
+            solution = targetingComputer.getShootingSolution(target, firingPoint, shotTime);
+        }
+        return solution;
+    }
 
     /**
 	 * onScannedRobot: What to do when you see another robot
 	 */
     @Override
 	public void onScannedRobot(ScannedRobotEvent e) {
-        tracker.update(e);
+        profiler.start(trackerSection);
+        Recording recording = tracker.update(e);
+        radar.scanned(recording.name, recording, recording.time);
+        patternGun.record(tracker.getTrack(recording.name));
+        profiler.stop(trackerSection);
 	}
 
     /**
@@ -207,16 +232,32 @@ public class Pwnator2000 extends AdvancedRobot
     @Override
     public void onRobotDeath(RobotDeathEvent event) {
         tracker.update(event);
+        radar.forget(event.getName());
+    }
+
+    @Override
+    public void onRoundEnded(RoundEndedEvent event) {
+        log.flush(out);
+        profiler.summary(out);
+    }
+
+    @Override
+    public void onSkippedTurn(SkippedTurnEvent event) {
+        String section = profiler.onSkippedTurn(event);
+        log.warn("Skipped a turn, slowest section was {}", section);
     }
 
     @Override
     public void onStatus(StatusEvent e) {
         super.onStatus(e);
+        profiler.start(statusSection);
         drivingComputer.onStatus(e);
+        profiler.stop(statusSection);
     }
 
     public void onPaint(Graphics2D g) {
         setInterruptible(true);
+        profiler.start(paintSection);
         drivingComputer.paint(g);
         tracker.paint(g);
         for (ShootingSolution solution : pendingSolutions) {
@@ -225,6 +266,7 @@ public class Pwnator2000 extends AdvancedRobot
         for (ShootingSolution solution : trackedBullets.values()) {
             DebugGraphics.drawBulletLine(g, solution.getShootingPosition(), solution.getTargetPosition());
         }
+        profiler.stop(paintSection);
     }
 
     /**
@@ -0,0 +1,98 @@
+package pbn.internals;
+
+/**
+ * A computation that runs in small resumable slices, possibly over several ticks, and keeps the best result found so
+ * far.
+ * <p/>
+ * Subclasses do one slice of work per {@link #step()} and report candidates through {@link #offer}. A job is started
+ * with {@link #restart()}, advanced with {@link #run(long)} whenever there is time to spare, and {@link #cancel()
+ * cancelled} when new information, such as a scan, makes its work stale. The best result so far can be used at any
+ * time, even before the job is done.
+ */
+public abstract class AnytimeJob<R> {
+
+    private R best;
+    private double bestScore;
+    private boolean running;
+    private boolean done;
+
+    /**
+     * Do one small slice of the work
+     *
+     * @return true if the job is finished
+     */
+    protected abstract boolean step();
+
+    /**
+     * Clear the state of the work, before it is started again
+     */
+    protected abstract void reset();
+
+    /**
+     * Report a candidate result; it is kept if it scores higher than every earlier one
+     */
+    protected void offer(R result, double score) {
+        if (best == null || score > bestScore) {
+            best = result;
+            bestScore = score;
+        }
+    }
+
+    /**
+     * Drop the state and results of the previous run, and start over
+     */
+    public void restart() {
+        reset();
+        best = null;
+        running = true;
+        done = false;
+    }
+
+    /**
+     * Stop the job and drop its results, e.g. because its inputs changed
+     */
+    public void cancel() {
+        best = null;
+        running = false;
+        done = false;
+    }
+
+    /**
+     * Run slices until the job is done or the deadline passed. At least one slice is run, so the job makes progress
+     * even on a busy tick.
+     *
+     * @param deadline value of {@link System#nanoTime()} after which no new slice is started
+     * @return true if the job is done
+     */
+    public boolean run(long deadline) {
+        if (!running) {
+            return done;
+        }
+        do {
+            if (step()) {
+                running = false;
+                done = true;
+            }
+        } while (running && System.nanoTime() < deadline);
+        return done;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the best result so far, or null if there is none
+     */
+    public R getBest() {
+        return best;
+    }
+
+    public double getBestScore() {
+        return bestScore;
+    }
+}
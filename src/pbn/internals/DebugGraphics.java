@@ -2,7 +2,6 @@ package pbn.internals;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
-import java.util.Iterator;
 
 import static java.lang.Math.sin;
 import static java.lang.StrictMath.cos;
@@ -15,26 +14,30 @@ public abstract class DebugGraphics {
 
     private static final Color RED_TRANSPARENT = new Color(0xff, 0x00, 0x00, 0x80);
     private static final Color WHITE_TRANSPARENT = new Color(0xFF, 0xFF, 0xFF, 0x80);
+    private static final int OVERLAY_LENGTH = 10;
+    private static final Track.Cursor CURSOR = new Track.Cursor();
 
     public static void drawTrackOverlay(Graphics2D g, Track track, long time) {
-        Iterator<Recording> recordings = track.snapshot().iterator();
-        Recording recording = recordings.next();
+        Recording recording = track.top();
+        if (recording == null) {
+            return;
+        }
         Point2D advance = recording.advance(time);
         int x;
         int y;
         int xOrig = (int) recording.position.getX();
         int yOrig = (int) recording.position.getY();
-        int step = 0;
-        while (recordings.hasNext()) {
-            recording = recordings.next();
-            int dx = (int) (sin(recording.headingRadians) * recording.velocity);
-            int dy = (int) (cos(recording.headingRadians) * recording.velocity);
-            x = (int) recording.position.getX();
-            y = (int) recording.position.getY();
+        Track.Cursor history = CURSOR.reset(track);
+        history.next(); //the top recording
+        while (history.next() && history.age() < OVERLAY_LENGTH) {
+            int dx = (int) (sin(history.heading()) * history.velocity());
+            int dy = (int) (cos(history.heading()) * history.velocity());
+            x = (int) history.x();
+            y = (int) history.y();
             g.setColor(Color.yellow);
             g.drawLine(xOrig, yOrig, x + dx, y + dy);
-            xOrig = (int) recording.position.getX();
-            yOrig = (int) recording.position.getY();
+            xOrig = x;
+            yOrig = y;
         }
         g.setColor(RED_TRANSPARENT);
         x = (int) advance.getX();
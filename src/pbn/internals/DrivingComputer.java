@@ -1,7 +1,6 @@
 package pbn.internals;
 
 import robocode.*;
-import robocode.util.Utils;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
@@ -19,11 +18,20 @@ import static robocode.util.Utils.normalAbsoluteAngle;
 import static robocode.util.Utils.normalRelativeAngle;
 
 /**
+ * Drives Pwnator2000 along arcs between random points in different quarters of the battlefield.
+ * <p/>
+ * Driving is a state machine that {@link #iterate()} advances once per tick, without blocking: turn towards the
+ * start heading of the arc while standing still, drive the arc, and plan the next arc once the move is complete.
+ * Getting hit by a bullet or ramming a robot interrupts the arc with a dodge, after which a new arc is planned.
  */
 public class DrivingComputer {
 
 
     private static final int DODGE_DISTANCE = 60;
+    /**
+     * Longest look ahead of {@link #getFiringPosition}
+     */
+    private static final int MAX_PREDICTION = 100;
 
     enum Segment {
         BOTTOM_LEFT(1, 1),
@@ -43,37 +51,86 @@ public class DrivingComputer {
         }
     }
 
+    enum State {
+        /**
+         * No arc yet; plan one
+         */
+        IDLE,
+        /**
+         * Turning on the spot towards the start heading of the arc
+         */
+        TURNING,
+        /**
+         * Driving the arc
+         */
+        ARCING,
+        /**
+         * Backing off after a hit
+         */
+        DODGING
+    }
+
     private NavData navData;
+    private State state = State.IDLE;
 
     private final AdvancedRobot robot;
+    private final Log log;
+    private final TickProfiler profiler;
+    private final int iterateSection;
     private double turnRateDeg = Rules.MAX_TURN_RATE;
 
     private final int bfX, bfY;
     private final int bfX2, bfY2;
     private final int buffer;
-    private final Random random = Utils.getRandom();
-    private boolean dodging = false;
+    private final Random random = RandomSource.get();
+    private final MovementPredictor predictor;
 
-    public DrivingComputer(AdvancedRobot robot) {
+    public DrivingComputer(AdvancedRobot robot, Log log, TickProfiler profiler) {
         this.robot = robot;
+        this.log = log;
+        this.profiler = profiler;
+        this.iterateSection = profiler.section("DrivingComputer.iterate");
         bfX = (int) robot.getBattleFieldWidth();
         bfY = (int) robot.getBattleFieldHeight();
         bfX2 = bfX / 2;
         bfY2 = bfY / 2;
         buffer = (int) (Math.max(robot.getHeight(), robot.getWidth()) + 10);
+        predictor = new MovementPredictor(bfX, bfY, MAX_PREDICTION);
     }
 
 
-    public synchronized boolean hasNavData() {
+    public boolean hasNavData() {
         return navData != null;
     }
 
-    public synchronized void iterate() {
-        //wait, and get ready for a turn onto the new course
-        robot.waitFor(new MoveCompleteCondition(robot));
-        dodging = false;
-//        robot.waitFor(new TurnCompleteCondition(robot));
-        //compute start and end points
+    /**
+     * Advance the driving by one tick. Call once per tick, before {@code execute()}.
+     */
+    public void iterate() {
+        profiler.start(iterateSection);
+        switch (state) {
+            case IDLE:
+                planArc();
+                break;
+            case TURNING:
+                if (robot.getTurnRemainingRadians() == 0) {
+                    startArc();
+                }
+                break;
+            case ARCING:
+            case DODGING:
+                if (robot.getDistanceRemaining() == 0) {
+                    planArc();
+                }
+                break;
+        }
+        profiler.stop(iterateSection);
+    }
+
+    /**
+     * Pick the end point of the next arc, in another quarter of the battlefield, and turn towards its start heading
+     */
+    private void planArc() {
         double currX = robot.getX();
         double currY = robot.getY();
         Point2D from = new Point2D.Double(currX, currY);
@@ -83,28 +140,27 @@ public class DrivingComputer {
         double nextX = min(bfX - buffer, max(buffer, random.nextInt(bfX2) + (nextSegment.xMult - 1) * bfX2));
         double nextY = min(bfY - buffer, max(buffer, random.nextInt(bfY2) + (nextSegment.yMult - 1) * bfY2));
         Point2D to = new Point2D.Double(nextX, nextY);
-        navigate(from, to);
-    }
-
-    private void setTurnRateDeg(double turnRate) {
-        this.turnRateDeg = turnRate;
-        robot.setMaxTurnRate(turnRate);
-    }
-
-    private void navigate(Point2D from, Point2D to) {
-        double currHeading = robot.getHeadingRadians();
         navData = computeNavigationArc(from, to);
-        robot.setDebugProperty("NavData", navData.toString());
+        log.property("NavData", navData);
         setTurnRateDeg(Rules.MAX_TURN_RATE);
-        robot.turnRightRadians(normalRelativeAngle(navData.startHeading - currHeading));
-        robot.waitFor(new TurnCompleteCondition(robot));
+        robot.setAhead(0);
+        robot.setTurnRightRadians(normalRelativeAngle(navData.startHeading - robot.getHeadingRadians()));
+        state = State.TURNING;
+    }
 
+    private void startArc() {
         setTurnRateDeg(navData.getMaxTurnRateDeg());
         robot.setAhead(navData.distance);
         robot.setTurnRightRadians(navData.getTurn());
+        state = State.ARCING;
+    }
+
+    private void setTurnRateDeg(double turnRate) {
+        this.turnRateDeg = turnRate;
+        robot.setMaxTurnRate(turnRate);
     }
 
-    private NavData computeNavigationArc(Point2D from, Point2D to) {
+    NavData computeNavigationArc(Point2D from, Point2D to) {
         Point2D centerOfArc;
 
         double heading = getAbsoluteBearing(from, to);
@@ -119,10 +175,10 @@ public class DrivingComputer {
 
         int yWall = midPoint.getY() > bfY2 ? bfY : 0;
         double dY = yWall - midPoint.getY();
-        robot.setDebugProperty("centerHeading", String.valueOf(toDegrees(centerHeading)));
-        robot.setDebugProperty("tan(theta)", String.valueOf(tan(centerHeading)));
-        robot.setDebugProperty("dx", String.valueOf(dX));
-        robot.setDebugProperty("dy", String.valueOf(dY));
+        log.property("centerHeading", toDegrees(centerHeading));
+        log.property("tan(theta)", tan(centerHeading));
+        log.property("dx", dX);
+        log.property("dy", dY);
         Point2D centerA = new Point2D.Double(xWall,
                 midPoint.getY() + dX / tan(centerHeading)
         );
@@ -133,9 +189,8 @@ public class DrivingComputer {
 
 
         double traversedAngle = abs(getAbsoluteBearing(centerOfArc, to) - getAbsoluteBearing(centerOfArc, from));
-        robot.setDebugProperty("traversedAngle" , String.valueOf(toDegrees(traversedAngle)));
         double radius = centerOfArc.distance(to);
-        robot.setDebugProperty("radius" , String.valueOf(radius));
+        log.property("radius", radius);
         double distance = traversedAngle * radius;
 
         double startHeading = normalAbsoluteAngle(getAbsoluteBearing(from, centerOfArc))
@@ -149,43 +204,24 @@ public class DrivingComputer {
             distance *= -1;
         }
         traversedAngle = abs(normalRelativeAngle(startHeading - endHeading));
-        robot.setDebugProperty("traversedAngle" , String.valueOf(toDegrees(traversedAngle)));
+        log.property("traversedAngle", toDegrees(traversedAngle));
 
 
         return new NavData(from, to, centerOfArc, distance, startHeading, endHeading);
     }
 
+    /**
+     * Our predicted position after the given number of ticks, following the current orders
+     */
     public Point2D getFiringPosition(long shotTime) {
-        double x = robot.getX();
-        double y = robot.getY();
-        double distanceRemaining = robot.getDistanceRemaining();
-        double remainingRadians = robot.getTurnRemainingRadians();
-        double turnRate = (PI * this.turnRateDeg) / 180;
-        double velocity = robot.getVelocity();
-        double heading = robot.getHeadingRadians();
-        for (long t = 0; t < shotTime; t++) {
-            if (remainingRadians > 0) {
-                double dh = signum(remainingRadians) * min(abs(remainingRadians), turnRate);
-                heading += dh;
-                remainingRadians -= dh;
-            }
-            double dp = 0;
-            if (distanceRemaining > 0) {
-                dp = min(distanceRemaining, velocity);
-            } else if (distanceRemaining < 0) {
-               dp = max(distanceRemaining, velocity);
-            }
-            distanceRemaining -= dp;
-            x += dp * dx(heading);
-            y += dp * dy(heading);
-        }
-        return new Point2D.Double(x, y);
+        int ticks = predictor.predict(robot, toRadians(turnRateDeg), (int) shotTime);
+        return new Point2D.Double(predictor.x(ticks), predictor.y(ticks));
     }
 
 
     public void onHitRobot(HitRobotEvent event) {
-        if (dodging) return;
-        dodging = true;
+        if (state == State.DODGING) return;
+        state = State.DODGING;
         double eventBearing = event.getBearingRadians();
         robot.setTurnRightRadians(0);
         if (abs(normalRelativeAngle(eventBearing)) <= PI / 2) {
@@ -202,8 +238,8 @@ public class DrivingComputer {
 
 
     public void onHitByBullet(HitByBulletEvent e) {
-        if (dodging) return;
-        dodging = true;
+        if (state == State.DODGING) return;
+        state = State.DODGING;
         int dodge = 30 + random.nextInt(120);
         setTurnRateDeg(Rules.MAX_TURN_RATE);
         if (robot.getDistanceRemaining() != 0) {
@@ -268,18 +304,7 @@ class NavData {
     }
 
     long timeToTargetFromStop() {
-        long t = 0;
-        double a = Rules.ACCELERATION;
-        double d = Rules.DECELERATION;
-        long dtA = (long) (Rules.MAX_VELOCITY / a);
-        t += dtA;
-        long dtD = (long) (Rules.MAX_VELOCITY / d);
-        t += dtD;
-        double accelerationDistance = (a * pow(dtA, 2))/2;
-        double decelerationDistance = (d * pow(dtD, 2))/2;
-        double remainingDistance = abs(distance) - (accelerationDistance + decelerationDistance);
-        t += max(remainingDistance / Rules.MAX_VELOCITY, 0);
-        return t;
+        return max(1, Physics.travelTime(distance));
     }
 
     @Override
@@ -0,0 +1,175 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+
+/**
+ * Tells the shots of the enemies apart from the other causes of their energy drops.
+ * <p/>
+ * Between two scans of an enemy, the ledger adds up the energy changes it can explain: damage from our bullets, the
+ * bonus for hitting us, rams with us, and the wall hits and rams it infers from the enemy stopping faster than the
+ * rules allow. Only what is left of a drop can be a shot, and only if the {@link GunHeatTracker} says the enemy's gun
+ * could have cooled down since its last shot; every shot declared heats it up again. The scans of an enemy that cannot
+ * have fired are booked without reconciling them.
+ * <p/>
+ * Robot events are delivered before scans, so the events of a tick are booked before its scans are reconciled.
+ */
+public class EnergyLedger {
+
+    private static final double HALF_SIZE = 18;
+    private static final double WALL_TOLERANCE = .01;
+    private static final double EPSILON = 1e-6;
+
+    private final GunHeatTracker gunHeat;
+    private final double maxX, maxY;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private int inferred, suppressed;
+
+    private static class Entry {
+        long time;
+        double energy;
+        double velocity;
+        /**
+         * Energy lost since the last scan to known causes other than shooting, negative for gains
+         */
+        double damage;
+        boolean rammed;
+    }
+
+    /**
+     * @param gunHeat           gun heat model of the enemies, told about every shot declared
+     * @param battleFieldWidth  width of the battlefield
+     * @param battleFieldHeight height of the battlefield
+     */
+    public EnergyLedger(GunHeatTracker gunHeat, double battleFieldWidth, double battleFieldHeight) {
+        this.gunHeat = gunHeat;
+        maxX = battleFieldWidth - HALF_SIZE;
+        maxY = battleFieldHeight - HALF_SIZE;
+    }
+
+    /**
+     * Reconcile a scan of an enemy with the energy changes booked since its last scan
+     *
+     * @return the power of the bullet the enemy fired since its last scan, or 0 if it did not fire
+     */
+    public double scanned(String name, long time, double energy, double x, double y, double velocity) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(name, entry);
+            book(entry, time, energy, velocity);
+            return 0;
+        }
+        if (time <= entry.time) {
+            return 0;
+        }
+        double drop = entry.energy - energy;
+        if (!gunHeat.canFire(name, time)) {
+            if (drop > 0 && drop <= Rules.MAX_BULLET_POWER) {
+                suppressed++;
+            }
+            book(entry, time, energy, velocity);
+            return 0;
+        }
+        double damage = entry.damage;
+        if (velocity == 0 && entry.velocity != 0) {
+            damage += stopDamage(entry, time, x, y);
+        }
+        double unexplained = drop - damage;
+        double power = 0;
+        if (unexplained >= Rules.MIN_BULLET_POWER - EPSILON && unexplained <= Rules.MAX_BULLET_POWER + EPSILON) {
+            power = max(Rules.MIN_BULLET_POWER, min(Rules.MAX_BULLET_POWER, unexplained));
+            gunHeat.fired(name, max(entry.time + 1, gunHeat.earliestShot(name)), time, power);
+            inferred++;
+        } else if (drop > 0 && drop <= Rules.MAX_BULLET_POWER) {
+            suppressed++; //would have been taken for a shot from the energy drop alone
+        }
+        book(entry, time, energy, velocity);
+        return power;
+    }
+
+    private void book(Entry entry, long time, double energy, double velocity) {
+        entry.time = time;
+        entry.energy = energy;
+        entry.velocity = velocity;
+        entry.damage = 0;
+        entry.rammed = false;
+    }
+
+    /**
+     * Damage of whatever stopped an enemy that was moving at its last scan: a wall if it stands against one, or else
+     * a robot if it stopped faster than it can brake. Over a gap in the scans it may have hit a wall at any speed.
+     */
+    private double stopDamage(Entry entry, long time, double x, double y) {
+        boolean atWall = x <= HALF_SIZE + WALL_TOLERANCE || x >= maxX - WALL_TOLERANCE
+                || y <= HALF_SIZE + WALL_TOLERANCE || y >= maxY - WALL_TOLERANCE;
+        if (time - entry.time > 1) {
+            return atWall ? Rules.getWallHitDamage(Rules.MAX_VELOCITY) : 0;
+        }
+        if (atWall) {
+            return Rules.getWallHitDamage(min(Rules.MAX_VELOCITY, abs(entry.velocity) + Rules.ACCELERATION));
+        }
+        if (abs(entry.velocity) > Rules.DECELERATION + EPSILON && !entry.rammed) {
+            return Rules.ROBOT_HIT_DAMAGE;
+        }
+        return 0;
+    }
+
+    /**
+     * One of our bullets hit an enemy
+     */
+    public void bulletHit(String name, double power) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.damage += Rules.getBulletDamage(power);
+        }
+    }
+
+    /**
+     * A bullet of an enemy hit us, for which it gains energy
+     */
+    public void hitByBullet(String name, double power) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.damage -= Rules.getBulletHitBonus(power);
+        }
+    }
+
+    /**
+     * We rammed an enemy, or it rammed us
+     */
+    public void hitRobot(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.damage += Rules.ROBOT_HIT_DAMAGE;
+            entry.rammed = true;
+        }
+    }
+
+    public void forget(String name) {
+        entries.remove(name);
+    }
+
+    /**
+     * @return number of shots declared
+     */
+    public int getInferred() {
+        return inferred;
+    }
+
+    /**
+     * @return number of energy drops of at most {@link Rules#MAX_BULLET_POWER} that were not declared shots
+     */
+    public int getSuppressed() {
+        return suppressed;
+    }
+
+    public void summary(PrintStream out) {
+        out.println("shots inferred " + inferred + ", suppressed " + suppressed);
+    }
+}
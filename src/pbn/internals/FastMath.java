@@ -0,0 +1,177 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import static java.lang.Math.*;
+
+/**
+ * Table driven trigonometry for the hot paths.
+ * <p/>
+ * Every function falls back to {@link Math} unless fast mode is switched on with {@link #setFast(boolean)}, so a
+ * robot can compare both modes. Tables are linearly interpolated; the worst case error of the sine table is
+ * (2 * PI / size)^2 / 8, see {@link #errorBound()}.
+ */
+public abstract class FastMath {
+
+    public static final int DEFAULT_RESOLUTION_BITS = 12;
+
+    private static final double PI2 = PI / 2;
+    private static final double MIN_POWER = Rules.MIN_BULLET_POWER;
+    private static final double MAX_POWER = Rules.MAX_BULLET_POWER;
+    private static final double POWER_STEP = 0.01;
+
+    private static boolean fast = false;
+
+    private static int size;
+    private static int mask;
+    private static double toIndex;
+    private static double[] sinTable;
+    private static double[] atanTable;
+    private static final double[] escapeAngles = new double[(int) round((MAX_POWER - MIN_POWER) / POWER_STEP) + 2];
+
+    static {
+        setResolution(DEFAULT_RESOLUTION_BITS);
+        for (int i = 0; i < escapeAngles.length; i++) {
+            double power = min(MAX_POWER, MIN_POWER + i * POWER_STEP);
+            escapeAngles[i] = Math.asin(Rules.MAX_VELOCITY / Rules.getBulletSpeed(power));
+        }
+    }
+
+    /**
+     * Switch between table lookups and the exact {@link Math} functions
+     */
+    public static void setFast(boolean fast) {
+        FastMath.fast = fast;
+    }
+
+    public static boolean isFast() {
+        return fast;
+    }
+
+    /**
+     * Rebuild the tables with 2^bits entries per full circle (and per unit of atan argument)
+     */
+    public static void setResolution(int bits) {
+        int newSize = 1 << bits;
+        double[] newSin = new double[newSize + 1];
+        double[] newAtan = new double[newSize + 1];
+        for (int i = 0; i <= newSize; i++) {
+            newSin[i] = Math.sin(2 * PI * i / newSize);
+            newAtan[i] = Math.atan((double) i / newSize);
+        }
+        sinTable = newSin;
+        atanTable = newAtan;
+        toIndex = newSize / (2 * PI);
+        mask = newSize - 1;
+        size = newSize;
+    }
+
+    /**
+     * Smallest resolution (in bits) whose sine error is below the given bound
+     */
+    public static int resolutionFor(double maxError) {
+        int bits = 4;
+        while (bits < 24 && errorBound(1 << bits) > maxError) {
+            bits++;
+        }
+        return bits;
+    }
+
+    /**
+     * @return the worst case absolute error of sin and cos at the current resolution
+     */
+    public static double errorBound() {
+        return errorBound(size);
+    }
+
+    private static double errorBound(int size) {
+        double step = 2 * PI / size;
+        return step * step / 8;
+    }
+
+    public static double sin(double angle) {
+        if (!fast) {
+            return Math.sin(angle);
+        }
+        double index = angle * toIndex;
+        long floor = (long) index;
+        if (index < floor) {
+            floor--;
+        }
+        int i = (int) (floor & mask);
+        double low = sinTable[i];
+        return low + (sinTable[i + 1] - low) * (index - floor);
+    }
+
+    public static double cos(double angle) {
+        if (!fast) {
+            return Math.cos(angle);
+        }
+        return sin(angle + PI2);
+    }
+
+    public static double atan2(double y, double x) {
+        if (!fast) {
+            return Math.atan2(y, x);
+        }
+        double ax = abs(x);
+        double ay = abs(y);
+        if (ax == 0 && ay == 0) {
+            return 0;
+        }
+        double angle;
+        if (ay > ax) {
+            angle = PI2 - atan(ax / ay);
+        } else {
+            angle = atan(ay / ax);
+        }
+        if (x < 0) {
+            angle = PI - angle;
+        }
+        return y < 0 ? -angle : angle;
+    }
+
+    public static double asin(double value) {
+        if (!fast) {
+            return Math.asin(value);
+        }
+        value = max(-1, min(1, value));
+        return atan2(value, sqrt(1 - value * value));
+    }
+
+    /**
+     * Maximum escape angle, asin(8 / bullet speed), for a bullet of the given power
+     */
+    public static double escapeAngle(double bulletPower) {
+        if (!fast) {
+            return Math.asin(Rules.MAX_VELOCITY / Rules.getBulletSpeed(bulletPower));
+        }
+        double index = (max(MIN_POWER, min(MAX_POWER, bulletPower)) - MIN_POWER) / POWER_STEP;
+        int i = (int) index;
+        double low = escapeAngles[i];
+        return low + (escapeAngles[i + 1] - low) * (index - i);
+    }
+
+    /**
+     * Maximum escape angle for a bullet travelling at the given speed
+     */
+    public static double escapeAngleForSpeed(double bulletSpeed) {
+        if (!fast) {
+            return Math.asin(Rules.MAX_VELOCITY / bulletSpeed);
+        }
+        return escapeAngle((20 - bulletSpeed) / 3);
+    }
+
+    /**
+     * Table lookup of atan for arguments in [0, 1]
+     */
+    private static double atan(double value) {
+        double index = value * size;
+        int i = (int) index;
+        if (i >= size) {
+            return atanTable[size];
+        }
+        double low = atanTable[i];
+        return low + (atanTable[i + 1] - low) * (index - i);
+    }
+}
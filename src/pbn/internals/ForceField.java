@@ -0,0 +1,124 @@
+package pbn.internals;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Reusable anti-gravity force field.
+ * <p/>
+ * Force points are kept as parallel primitive arrays that are only grown, never reallocated per tick, so filling
+ * and summing the field does not allocate. Each point pushes with weight / distance^2 along the line from the point
+ * to the position the field is evaluated at.
+ */
+public class ForceField {
+
+    private double[] x;
+    private double[] y;
+    private double[] weight;
+    private double[] forceX;
+    private double[] forceY;
+    private int size;
+
+    private double totalX;
+    private double totalY;
+
+    public ForceField(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        weight = new double[capacity];
+        forceX = new double[capacity];
+        forceY = new double[capacity];
+    }
+
+    /**
+     * Remove all force points, keeping the buffers
+     */
+    public void clear() {
+        size = 0;
+        totalX = 0;
+        totalY = 0;
+    }
+
+    public void add(double pointX, double pointY, double pointWeight) {
+        if (size == x.length) {
+            grow();
+        }
+        x[size] = pointX;
+        y[size] = pointY;
+        weight[size] = pointWeight;
+        size++;
+    }
+
+    /**
+     * Compute the force of every point on the given position, and the total force
+     */
+    public void sum(double atX, double atY) {
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < size; i++) {
+            double dX = atX - x[i];
+            double dY = atY - y[i];
+            double distanceSq = dX * dX + dY * dY;
+            double fX = 0;
+            double fY = 0;
+            if (distanceSq > 0) {
+                // weight / d^2 along the unit vector (dX, dY) / d
+                double f = weight[i] / (distanceSq * sqrt(distanceSq));
+                fX = dX * f;
+                fY = dY * f;
+            }
+            forceX[i] = fX;
+            forceY[i] = fY;
+            sumX += fX;
+            sumY += fY;
+        }
+        totalX = sumX;
+        totalY = sumY;
+    }
+
+    private void grow() {
+        int capacity = x.length * 2 + 1;
+        x = copyOf(x, capacity);
+        y = copyOf(y, capacity);
+        weight = copyOf(weight, capacity);
+        forceX = copyOf(forceX, capacity);
+        forceY = copyOf(forceY, capacity);
+    }
+
+    private static double[] copyOf(double[] array, int capacity) {
+        double[] copy = new double[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getWeight(int i) {
+        return weight[i];
+    }
+
+    public double getForceX(int i) {
+        return forceX[i];
+    }
+
+    public double getForceY(int i) {
+        return forceY[i];
+    }
+
+    public double getTotalX() {
+        return totalX;
+    }
+
+    public double getTotalY() {
+        return totalY;
+    }
+}
@@ -0,0 +1,92 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.ceil;
+
+/**
+ * Models the gun heat of every enemy, to tell when each can fire next.
+ * <p/>
+ * Every gun starts a round hot, and firing heats it by {@link Rules#getGunHeat} of the bullet power, after which it
+ * cools by the gun cooling rate of the battle every tick. Shots are only seen as energy drops between two scans, so a
+ * shot is known to have been fired within a window of ticks, and the next possible shot of the enemy is a window too:
+ * from the first tick it may be cool, one tick early to allow for the order in which the engine fires and cools, to
+ * the tick it is cool for sure.
+ */
+public class GunHeatTracker {
+
+    /**
+     * Gun heat of every robot at the start of a round
+     */
+    static final double INITIAL_GUN_HEAT = 3;
+    private static final double EPSILON = 1e-6;
+
+    private final double coolingRate;
+    private final long initialShot;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private static class Entry {
+        long earliest;
+        long latest;
+    }
+
+    /**
+     * @param gunCoolingRate gun cooling rate of the battle
+     */
+    public GunHeatTracker(double gunCoolingRate) {
+        this.coolingRate = gunCoolingRate;
+        initialShot = coolingTicks(INITIAL_GUN_HEAT);
+    }
+
+    private long coolingTicks(double heat) {
+        return (long) ceil(heat / coolingRate - EPSILON);
+    }
+
+    /**
+     * An enemy fired a bullet some time within the given window
+     *
+     * @param earliest first tick it may have fired at
+     * @param latest   last tick it may have fired at
+     * @param power    power of the bullet
+     */
+    public void fired(String name, long earliest, long latest, double power) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(name, entry);
+        }
+        long ticks = coolingTicks(Rules.getGunHeat(power));
+        entry.earliest = earliest + ticks - 1;
+        entry.latest = latest + ticks;
+    }
+
+    /**
+     * @return the first tick the enemy may fire at
+     */
+    public long earliestShot(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? initialShot - 1 : entry.earliest;
+    }
+
+    /**
+     * @return the tick by which the gun of the enemy is cool for sure
+     */
+    public long latestCool(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? initialShot : entry.latest;
+    }
+
+    /**
+     * @return true if the enemy may have fired at or before the given tick since its last shot
+     */
+    public boolean canFire(String name, long time) {
+        return time >= earliestShot(name);
+    }
+
+    public void forget(String name) {
+        entries.remove(name);
+    }
+}
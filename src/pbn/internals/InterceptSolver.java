@@ -0,0 +1,172 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+
+/**
+ * Finds the tick where a bullet fired from a given point meets a predicted target.
+ * <p/>
+ * The residual r(t) = distance(firing point, target at t) - bullet speed * t drops by at least
+ * (bullet speed - max robot velocity) per tick, so it is strictly decreasing and the first tick where it falls
+ * below the hit radius is found by bracketing it and closing the bracket with alternating secant and bisection
+ * steps. The previous flight time for each target is used as a first guess, which usually brackets the
+ * solution right away.
+ */
+public class InterceptSolver {
+
+    private final double minX, minY, maxX, maxY;
+    private final double maxBulletDistance;
+    private final Map<String, Long> lastFlightTimes = new HashMap<String, Long>();
+
+    private double x, y;
+    private long flightTime;
+    private int evaluations;
+
+    /**
+     * @param battleFieldWidth  width of the battlefield
+     * @param battleFieldHeight height of the battlefield
+     * @param wallMargin        minimal distance to the walls for a predicted target position
+     */
+    public InterceptSolver(double battleFieldWidth, double battleFieldHeight, double wallMargin) {
+        this.minX = wallMargin;
+        this.minY = wallMargin;
+        this.maxX = battleFieldWidth - wallMargin;
+        this.maxY = battleFieldHeight - wallMargin;
+        this.maxBulletDistance = battleFieldWidth + battleFieldHeight;
+    }
+
+    /**
+     * Solve for the intercept point. On success the result is available from {@link #getX()}, {@link #getY()} and
+     * {@link #getFlightTime()}.
+     *
+     * @param target      the target to hit
+     * @param name        name of the target, used to warm-start the next solution for the same target
+     * @param fromX       x coordinate of the firing point
+     * @param fromY       y coordinate of the firing point
+     * @param firingTime  absolute time of the shot
+     * @param bulletSpeed speed of the bullet
+     * @param hitRadius   distance at which the bullet is considered to hit
+     * @return false if no solution exists
+     */
+    public boolean solve(Predictable target, String name, double fromX, double fromY,
+                         long firingTime, double bulletSpeed, double hitRadius) {
+        evaluations = 0;
+        double closingSpeed = bulletSpeed - Rules.MAX_VELOCITY;
+        double rLo = residual(target, fromX, fromY, firingTime, 0, bulletSpeed);
+        if (rLo <= hitRadius) {
+            return found(target, name, firingTime, 0);
+        }
+        if (closingSpeed <= 0) {
+            return false;
+        }
+        long lo = 0;
+        long hi = (long) ceil((rLo - hitRadius) / closingSpeed);
+        double rHi = residual(target, fromX, fromY, firingTime, hi, bulletSpeed);
+
+        Long previous = lastFlightTimes.get(name);
+        if (previous != null && previous > lo && previous < hi) {
+            //probe the previous flight time and its neighbour towards the solution
+            long guess = previous;
+            double r = residual(target, fromX, fromY, firingTime, guess, bulletSpeed);
+            if (r <= hitRadius) {
+                hi = guess;
+                rHi = r;
+                guess--;
+            } else {
+                lo = guess;
+                rLo = r;
+                guess++;
+            }
+            if (guess > lo && guess < hi) {
+                r = residual(target, fromX, fromY, firingTime, guess, bulletSpeed);
+                if (r <= hitRadius) {
+                    hi = guess;
+                    rHi = r;
+                } else {
+                    lo = guess;
+                    rLo = r;
+                }
+            }
+        }
+
+        boolean secant = true;
+        while (hi - lo > 1) {
+            long mid;
+            if (secant) {
+                mid = lo + round((rLo - hitRadius) / (rLo - rHi) * (hi - lo));
+                mid = max(lo + 1, min(hi - 1, mid));
+            } else {
+                mid = (lo + hi) >>> 1;
+            }
+            secant = !secant;
+            double r = residual(target, fromX, fromY, firingTime, mid, bulletSpeed);
+            if (r <= hitRadius) {
+                hi = mid;
+                rHi = r;
+            } else {
+                lo = mid;
+                rLo = r;
+            }
+        }
+        if (hi * bulletSpeed > maxBulletDistance) {
+            lastFlightTimes.remove(name);
+            return false;
+        }
+        return found(target, name, firingTime, hi);
+    }
+
+    private boolean found(Predictable target, String name, long firingTime, long dt) {
+        flightTime = dt;
+        x = max(minX, min(maxX, target.x(firingTime + dt)));
+        y = max(minY, min(maxY, target.y(firingTime + dt)));
+        lastFlightTimes.put(name, dt);
+        return true;
+    }
+
+    private double residual(Predictable target, double fromX, double fromY, long firingTime, long dt, double bulletSpeed) {
+        evaluations++;
+        long time = firingTime + dt;
+        double dX = target.x(time) - fromX;
+        double dY = target.y(time) - fromY;
+        return sqrt(dX * dX + dY * dY) - bulletSpeed * dt;
+    }
+
+    /**
+     * Forget the warm-start data for a target, e.g. when it dies
+     */
+    public void forget(String name) {
+        lastFlightTimes.remove(name);
+    }
+
+    /**
+     * @return x coordinate of the last intercept point, kept inside the battlefield
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return y coordinate of the last intercept point, kept inside the battlefield
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return bullet flight time of the last solution, in ticks
+     */
+    public long getFlightTime() {
+        return flightTime;
+    }
+
+    /**
+     * @return number of target predictions used for the last solution
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+}
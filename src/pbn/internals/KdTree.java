@@ -0,0 +1,439 @@
+package pbn.internals;
+
+import java.util.Arrays;
+
+/**
+ * Bounded KD-tree of weighted feature vectors with a value each, e.g. situations and the guess factors seen in them.
+ * <p/>
+ * Points live in a ring of slots: once the tree is full, adding a point evicts the oldest one. Leaves are buckets of
+ * slot indices, split at the mean of their widest dimension when they overflow; an evicted point is swapped out of
+ * its bucket in O(1). Points equal to a split value may sit on either side, which searches allow for. Every node
+ * keeps the bounding box of the points added under it, and a search skips the nodes whose box is further away than
+ * the k-th neighbour found so far. Boxes do not shrink on eviction. An eviction that leaves a leaf empty, or small
+ * enough to share a bucket with its sibling leaf, collapses the leaf into its parent and returns the nodes to the pool,
+ * so the tree keeps its size under churn in O(1) amortized per eviction. Should the node pool run out nonetheless, the
+ * tree is rebuilt from the live points.
+ * <p/>
+ * {@link #nearest} keeps its results in arrays owned by the tree, so queries do not allocate. A tree must only be
+ * used by one thread.
+ */
+public class KdTree {
+
+    private static final int BUCKET_SIZE = 16;
+
+    private final int dimensions;
+    private final int capacity;
+    private final double[] weights;
+
+    private final double[] points;
+    private final double[] values;
+    private final int[] leafOf;
+    private final int[] positionInLeaf;
+    private long written;
+
+    private final double[] boxMin;
+    private final double[] boxMax;
+    private final int[] splitDimension;
+    private final double[] splitValue;
+    private final int[] left;
+    private final int[] right;
+    private final int[] parent;
+    private final int[] bucket;
+    private final int[] bucketSize;
+    private final int[] freeNodes;
+    private int freeCount;
+    private int root;
+
+    private final int[] resultSlots;
+    private final double[] resultDistances;
+    private int resultCount;
+    private int k;
+    private double[] query;
+
+    /**
+     * @param weights  weight of each dimension in the distance
+     * @param capacity number of points kept
+     * @param maxK     largest number of neighbours that will be asked for
+     */
+    public KdTree(double[] weights, int capacity, int maxK) {
+        this.dimensions = weights.length;
+        this.weights = weights.clone();
+        this.capacity = capacity;
+        points = new double[capacity * dimensions];
+        values = new double[capacity];
+        leafOf = new int[capacity];
+        positionInLeaf = new int[capacity];
+        int nodes = capacity / 2 + 8;
+        boxMin = new double[nodes * dimensions];
+        boxMax = new double[nodes * dimensions];
+        splitDimension = new int[nodes];
+        splitValue = new double[nodes];
+        left = new int[nodes];
+        right = new int[nodes];
+        parent = new int[nodes];
+        bucket = new int[nodes * BUCKET_SIZE];
+        bucketSize = new int[nodes];
+        freeNodes = new int[nodes];
+        resultSlots = new int[maxK];
+        resultDistances = new double[maxK];
+        clearNodes();
+    }
+
+    private void clearNodes() {
+        freeCount = 0;
+        for (int node = freeNodes.length - 1; node >= 0; node--) {
+            freeNodes[freeCount++] = node;
+        }
+        root = newLeaf();
+        parent[root] = -1;
+    }
+
+    private int newLeaf() {
+        int node = freeNodes[--freeCount];
+        left[node] = -1;
+        right[node] = -1;
+        bucketSize[node] = 0;
+        Arrays.fill(boxMin, node * dimensions, (node + 1) * dimensions, Double.POSITIVE_INFINITY);
+        Arrays.fill(boxMax, node * dimensions, (node + 1) * dimensions, Double.NEGATIVE_INFINITY);
+        return node;
+    }
+
+    /**
+     * Add a point, evicting the oldest one if the tree is full
+     *
+     * @param point feature vector, copied
+     * @param value value of the point
+     */
+    public void add(double[] point, double value) {
+        int slot = (int) (written % capacity);
+        if (written >= capacity) {
+            remove(slot);
+        }
+        System.arraycopy(point, 0, points, slot * dimensions, dimensions);
+        values[slot] = value;
+        written++;
+        if (freeCount < 2) {
+            rebuild();
+        } else {
+            insert(slot);
+        }
+    }
+
+    private void remove(int slot) {
+        int leaf = leafOf[slot];
+        int last = --bucketSize[leaf];
+        int position = positionInLeaf[slot];
+        int moved = bucket[leaf * BUCKET_SIZE + last];
+        bucket[leaf * BUCKET_SIZE + position] = moved;
+        positionInLeaf[moved] = position;
+        reclaim(leaf);
+    }
+
+    /**
+     * Give the nodes of a leaf that lost a point back to the pool: drop it if it is empty, or merge it with its sibling
+     * leaf if both fit in one bucket, and go on with the parent
+     */
+    private void reclaim(int leaf) {
+        int node = leaf;
+        while (node != root) {
+            int up = parent[node];
+            int sibling = left[up] == node ? right[up] : left[up];
+            if (bucketSize[node] == 0) {
+                replace(up, sibling);
+                free(node);
+                free(up);
+                return;
+            }
+            if (left[sibling] >= 0 || bucketSize[node] + bucketSize[sibling] > BUCKET_SIZE) {
+                return;
+            }
+            left[up] = -1;
+            right[up] = -1;
+            bucketSize[up] = 0;
+            moveBucket(node, up);
+            moveBucket(sibling, up);
+            free(node);
+            free(sibling);
+            node = up;
+        }
+    }
+
+    /**
+     * Put a node in the place of its parent
+     */
+    private void replace(int up, int node) {
+        int grandparent = parent[up];
+        if (grandparent < 0) {
+            root = node;
+        } else if (left[grandparent] == up) {
+            left[grandparent] = node;
+        } else {
+            right[grandparent] = node;
+        }
+        parent[node] = grandparent;
+    }
+
+    private void moveBucket(int from, int to) {
+        int base = from * BUCKET_SIZE;
+        for (int i = 0; i < bucketSize[from]; i++) {
+            append(to, bucket[base + i]);
+        }
+        bucketSize[from] = 0;
+    }
+
+    private void free(int node) {
+        freeNodes[freeCount++] = node;
+    }
+
+    private void insert(int slot) {
+        int node = root;
+        int offset = slot * dimensions;
+        while (true) {
+            grow(node, offset);
+            if (left[node] < 0) {
+                break;
+            }
+            double v = points[offset + splitDimension[node]];
+            double split = splitValue[node];
+            if (v < split) {
+                node = left[node];
+            } else if (v > split) {
+                node = right[node];
+            } else {
+                node = size(left[node]) <= size(right[node]) ? left[node] : right[node];
+            }
+        }
+        if (bucketSize[node] == BUCKET_SIZE) {
+            split(node);
+            insert(slot);
+            return;
+        }
+        append(node, slot);
+    }
+
+    /**
+     * Grow the box of a node to hold a point
+     */
+    private void grow(int node, int offset) {
+        int box = node * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            double v = points[offset + d];
+            if (v < boxMin[box + d]) {
+                boxMin[box + d] = v;
+            }
+            if (v > boxMax[box + d]) {
+                boxMax[box + d] = v;
+            }
+        }
+    }
+
+    /**
+     * Number of points in a leaf, or an estimate for an inner node
+     */
+    private int size(int node) {
+        return left[node] < 0 ? bucketSize[node] : BUCKET_SIZE;
+    }
+
+    private void append(int leaf, int slot) {
+        int position = bucketSize[leaf]++;
+        bucket[leaf * BUCKET_SIZE + position] = slot;
+        leafOf[slot] = leaf;
+        positionInLeaf[slot] = position;
+    }
+
+    /**
+     * Turn a full leaf into an inner node with two leaves, split at the mean of the widest dimension
+     */
+    private void split(int node) {
+        int base = node * BUCKET_SIZE;
+        int widest = 0;
+        double widestSpread = -1;
+        double widestMean = 0;
+        for (int d = 0; d < dimensions; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                double v = points[bucket[base + i] * dimensions + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                sum += v;
+            }
+            double spread = (max - min) * weights[d];
+            if (spread > widestSpread) {
+                widestSpread = spread;
+                widest = d;
+                widestMean = Math.max(min, Math.min(max, sum / BUCKET_SIZE));
+            }
+        }
+        int low = newLeaf();
+        int high = newLeaf();
+        splitDimension[node] = widest;
+        splitValue[node] = widestMean;
+        left[node] = low;
+        right[node] = high;
+        parent[low] = node;
+        parent[high] = node;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            int slot = bucket[base + i];
+            double v = points[slot * dimensions + widest];
+            int child = v < widestMean || v == widestMean && bucketSize[low] <= bucketSize[high] ? low : high;
+            grow(child, slot * dimensions);
+            append(child, slot);
+        }
+        bucketSize[node] = 0;
+    }
+
+    /**
+     * Rebuild the tree from the live points, dropping the empty leaves left by evictions
+     */
+    private void rebuild() {
+        clearNodes();
+        int size = size();
+        for (int slot = 0; slot < size; slot++) {
+            insert(slot);
+        }
+    }
+
+    /**
+     * Find the nearest points to a query, closest first. Read them with {@link #value} and {@link #distance}.
+     *
+     * @param query feature vector
+     * @param k     number of neighbours, at most the maxK of the tree
+     * @return number of points found
+     */
+    public int nearest(double[] query, int k) {
+        this.query = query;
+        this.k = Math.min(k, resultSlots.length);
+        resultCount = 0;
+        if (size() > 0 && this.k > 0) {
+            search(root, boxDistance(root));
+        }
+        this.query = null;
+        //the results form a max-heap; sort them closest first
+        for (int end = resultCount - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return resultCount;
+    }
+
+    private void search(int node, double boxDistance) {
+        if (resultCount == k && boxDistance >= resultDistances[0]) {
+            return;
+        }
+        if (left[node] < 0) {
+            int base = node * BUCKET_SIZE;
+            for (int i = 0; i < bucketSize[node]; i++) {
+                int slot = bucket[base + i];
+                double distance = distanceTo(slot);
+                if (resultCount < k) {
+                    resultSlots[resultCount] = slot;
+                    resultDistances[resultCount] = distance;
+                    siftUp(resultCount++);
+                } else if (distance < resultDistances[0]) {
+                    resultSlots[0] = slot;
+                    resultDistances[0] = distance;
+                    siftDown(0, resultCount);
+                }
+            }
+            return;
+        }
+        double leftDistance = boxDistance(left[node]);
+        double rightDistance = boxDistance(right[node]);
+        if (leftDistance <= rightDistance) {
+            search(left[node], leftDistance);
+            search(right[node], rightDistance);
+        } else {
+            search(right[node], rightDistance);
+            search(left[node], leftDistance);
+        }
+    }
+
+    /**
+     * Weighted squared distance between the query and the box of a node
+     */
+    private double boxDistance(int node) {
+        int box = node * dimensions;
+        double sum = 0;
+        for (int d = 0; d < dimensions; d++) {
+            double q = query[d];
+            double delta = q < boxMin[box + d] ? boxMin[box + d] - q : q > boxMax[box + d] ? q - boxMax[box + d] : 0;
+            sum += delta * delta * weights[d];
+        }
+        return sum;
+    }
+
+    /**
+     * Weighted squared distance between the query and a point
+     */
+    private double distanceTo(int slot) {
+        int offset = slot * dimensions;
+        double sum = 0;
+        for (int d = 0; d < dimensions; d++) {
+            double delta = query[d] - points[offset + d];
+            sum += delta * delta * weights[d];
+        }
+        return sum;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (resultDistances[parent] >= resultDistances[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && resultDistances[child + 1] > resultDistances[child]) {
+                child++;
+            }
+            if (resultDistances[i] >= resultDistances[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int slot = resultSlots[i];
+        resultSlots[i] = resultSlots[j];
+        resultSlots[j] = slot;
+        double distance = resultDistances[i];
+        resultDistances[i] = resultDistances[j];
+        resultDistances[j] = distance;
+    }
+
+    /**
+     * @return value of the i-th nearest point of the last query
+     */
+    public double value(int i) {
+        return values[resultSlots[i]];
+    }
+
+    /**
+     * @return weighted squared distance of the i-th nearest point of the last query
+     */
+    public double distance(int i) {
+        return resultDistances[i];
+    }
+
+    public int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "KdTree{size=" + size() + ", nodes=" + (freeNodes.length - freeCount) + '}';
+    }
+}
@@ -0,0 +1,258 @@
+package pbn.internals;
+
+import robocode.Robot;
+
+import java.io.PrintStream;
+
+/**
+ * Leveled, buffered logging for the robot thread.
+ * <p/>
+ * Messages are formatted with {} placeholders. Logging only stores the format and its arguments in a ring buffer;
+ * no string is built until {@link #flush(PrintStream)}, typically at the end of a round. Primitive overloads avoid
+ * boxing, so a disabled level costs a comparison and an enabled one costs no allocation. Integral arguments are
+ * printed without a decimal part. Object arguments are formatted at flush time, so only pass immutable ones. Guard
+ * with the {@link #ENABLED} constant to compile logging out entirely.
+ * <p/>
+ * Debug properties are only published at the debug level, throttled to one update per property per a given number of
+ * ticks.
+ */
+public class Log {
+
+    /**
+     * Set to false to let the compiler drop every call guarded by it
+     */
+    public static final boolean ENABLED = true;
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int OFF = 3;
+
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN"};
+    private static final int MAX_PROPERTIES = 32;
+    /**
+     * Arity of a message with a single integral argument
+     */
+    private static final int INTEGER = -2;
+
+    private final Robot robot;
+    private int level;
+
+    private final long[] times;
+    private final int[] levels;
+    private final String[] formats;
+    private final Object[] objects;
+    private final double[] first;
+    private final double[] second;
+    private final long[] integers;
+    private final int[] arity;
+    private int next;
+    private int count;
+    private int dropped;
+
+    private final int propertyInterval;
+    private final String[] propertyKeys = new String[MAX_PROPERTIES];
+    private final long[] propertyTimes = new long[MAX_PROPERTIES];
+    private int properties;
+
+    /**
+     * @param robot            robot to log for
+     * @param level            lowest level that is recorded
+     * @param capacity         number of messages kept; older ones are overwritten
+     * @param propertyInterval minimum number of ticks between two updates of the same debug property
+     */
+    public Log(Robot robot, int level, int capacity, int propertyInterval) {
+        this.robot = robot;
+        this.level = level;
+        this.times = new long[capacity];
+        this.levels = new int[capacity];
+        this.formats = new String[capacity];
+        this.objects = new Object[capacity];
+        this.first = new double[capacity];
+        this.second = new double[capacity];
+        this.integers = new long[capacity];
+        this.arity = new int[capacity];
+        this.propertyInterval = propertyInterval;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(int level) {
+        return ENABLED && level >= this.level;
+    }
+
+    public void debug(String format) {
+        if (isEnabled(DEBUG)) {
+            record(DEBUG, format, null, 0, 0, 0);
+        }
+    }
+
+    public void debug(String format, double a) {
+        if (isEnabled(DEBUG)) {
+            record(DEBUG, format, null, a, 0, 1);
+        }
+    }
+
+    public void debug(String format, long a) {
+        if (isEnabled(DEBUG)) {
+            integers[next] = a;
+            record(DEBUG, format, null, 0, 0, INTEGER);
+        }
+    }
+
+    public void debug(String format, double a, double b) {
+        if (isEnabled(DEBUG)) {
+            record(DEBUG, format, null, a, b, 2);
+        }
+    }
+
+    public void debug(String format, Object a) {
+        if (isEnabled(DEBUG)) {
+            record(DEBUG, format, a, 0, 0, -1);
+        }
+    }
+
+    public void info(String format) {
+        if (isEnabled(INFO)) {
+            record(INFO, format, null, 0, 0, 0);
+        }
+    }
+
+    public void info(String format, double a) {
+        if (isEnabled(INFO)) {
+            record(INFO, format, null, a, 0, 1);
+        }
+    }
+
+    public void info(String format, long a) {
+        if (isEnabled(INFO)) {
+            integers[next] = a;
+            record(INFO, format, null, 0, 0, INTEGER);
+        }
+    }
+
+    public void info(String format, double a, double b) {
+        if (isEnabled(INFO)) {
+            record(INFO, format, null, a, b, 2);
+        }
+    }
+
+    public void info(String format, Object a) {
+        if (isEnabled(INFO)) {
+            record(INFO, format, a, 0, 0, -1);
+        }
+    }
+
+    public void warn(String format) {
+        if (isEnabled(WARN)) {
+            record(WARN, format, null, 0, 0, 0);
+        }
+    }
+
+    public void warn(String format, Object a) {
+        if (isEnabled(WARN)) {
+            record(WARN, format, a, 0, 0, -1);
+        }
+    }
+
+    private void record(int messageLevel, String format, Object object, double a, double b, int args) {
+        int i = next;
+        times[i] = robot.getTime();
+        levels[i] = messageLevel;
+        formats[i] = format;
+        objects[i] = object;
+        first[i] = a;
+        second[i] = b;
+        arity[i] = args;
+        next = (i + 1) % formats.length;
+        if (count < formats.length) {
+            count++;
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * Format and print all buffered messages, oldest first, and empty the buffer
+     */
+    public void flush(PrintStream out) {
+        if (dropped > 0) {
+            out.println("(" + dropped + " older log messages dropped)");
+        }
+        int start = (next - count + formats.length) % formats.length;
+        StringBuilder line = new StringBuilder();
+        for (int n = 0; n < count; n++) {
+            int i = (start + n) % formats.length;
+            line.setLength(0);
+            line.append(times[i]).append(' ').append(LEVEL_NAMES[levels[i]]).append(' ');
+            format(line, i);
+            out.println(line);
+            formats[i] = null;
+            objects[i] = null;
+        }
+        count = 0;
+        dropped = 0;
+    }
+
+    private void format(StringBuilder line, int i) {
+        String format = formats[i];
+        int argument = 0;
+        int from = 0;
+        int placeholder;
+        while ((placeholder = format.indexOf("{}", from)) >= 0) {
+            line.append(format, from, placeholder);
+            if (arity[i] == INTEGER && argument == 0) {
+                line.append(integers[i]);
+            } else if (arity[i] < 0 && argument == 0) {
+                line.append(objects[i]);
+            } else if (argument < arity[i]) {
+                line.append(argument == 0 ? first[i] : second[i]);
+            } else {
+                line.append("{}");
+            }
+            argument++;
+            from = placeholder + 2;
+        }
+        line.append(format, from, format.length());
+    }
+
+    /**
+     * Publish a debug property, unless it was published less than the property interval ago
+     */
+    public void property(String key, double value) {
+        if (isEnabled(DEBUG) && due(key)) {
+            robot.setDebugProperty(key, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Publish a debug property, unless it was published less than the property interval ago.
+     * The value is only converted to a string when it is published.
+     */
+    public void property(String key, Object value) {
+        if (isEnabled(DEBUG) && due(key)) {
+            robot.setDebugProperty(key, String.valueOf(value));
+        }
+    }
+
+    private boolean due(String key) {
+        long time = robot.getTime();
+        for (int i = 0; i < properties; i++) {
+            if (propertyKeys[i].equals(key)) {
+                if (time - propertyTimes[i] < propertyInterval && time >= propertyTimes[i]) {
+                    return false;
+                }
+                propertyTimes[i] = time;
+                return true;
+            }
+        }
+        if (properties < MAX_PROPERTIES) {
+            propertyKeys[properties] = key;
+            propertyTimes[properties] = time;
+            properties++;
+        }
+        return true;
+    }
+}
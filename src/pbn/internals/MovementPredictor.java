@@ -0,0 +1,193 @@
+package pbn.internals;
+
+import robocode.AdvancedRobot;
+import robocode.Rules;
+
+import static java.lang.Math.*;
+
+/**
+ * Predicts our own movement tick by tick, applying the engine's rules exactly: the body turns first, at a rate that
+ * drops with speed, then the velocity changes with {@link Physics#newVelocity}, and the robot moves along its new
+ * heading. A robot that runs into a wall is put back on it along its heading as by {@link Physics#stopAtWall}, stops
+ * dead there, and its remaining distance is dropped.
+ * <p/>
+ * The states of a prediction are written to buffers allocated once, so a predictor can be run for many candidate
+ * orders per tick. Read them with {@link #x(int)} etc.; tick 0 is the starting state. Orders can be fixed for the
+ * whole prediction, or changed between ticks as a robot that steers every tick would.
+ */
+public class MovementPredictor {
+
+    private final double battleFieldWidth, battleFieldHeight;
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] velocity;
+    private int tick;
+    private int wallHit;
+
+    private double distanceRemaining, turnRemaining;
+    private double maxVelocity, maxTurnRate;
+    private boolean overDriving;
+    private double sin, cos;
+    private final double[] stop = new double[2];
+
+    /**
+     * @param battleFieldWidth  width of the battlefield
+     * @param battleFieldHeight height of the battlefield
+     * @param maxTicks          longest prediction that will be asked for
+     */
+    public MovementPredictor(double battleFieldWidth, double battleFieldHeight, int maxTicks) {
+        this.battleFieldWidth = battleFieldWidth;
+        this.battleFieldHeight = battleFieldHeight;
+        x = new double[maxTicks + 1];
+        y = new double[maxTicks + 1];
+        heading = new double[maxTicks + 1];
+        velocity = new double[maxTicks + 1];
+    }
+
+    /**
+     * Predict the movement under the given orders
+     *
+     * @param x                 x now
+     * @param y                 y now
+     * @param heading           heading now, in radians
+     * @param velocity          velocity now
+     * @param distanceRemaining distance left to move, negative for backwards
+     * @param turnRemaining     body turn left, in radians
+     * @param maxVelocity       velocity limit set by the robot
+     * @param maxTurnRate       turn rate limit set by the robot, in radians
+     * @param ticks             number of ticks to predict, at most the maxTicks of the predictor
+     * @return the number of ticks predicted
+     */
+    public int predict(double x, double y, double heading, double velocity,
+                       double distanceRemaining, double turnRemaining,
+                       double maxVelocity, double maxTurnRate, int ticks) {
+        start(x, y, heading, velocity);
+        setOrders(distanceRemaining, turnRemaining, maxVelocity, maxTurnRate);
+        for (int t = 0; t < ticks; t++) {
+            if (!step()) {
+                break;
+            }
+        }
+        return tick;
+    }
+
+    /**
+     * Start a prediction from the given state, without orders. Give orders with {@link #setOrders} and advance the
+     * prediction with {@link #step()}, e.g. to give new orders every tick.
+     */
+    public void start(double x, double y, double heading, double velocity) {
+        this.x[0] = x;
+        this.y[0] = y;
+        this.heading[0] = heading;
+        this.velocity[0] = velocity;
+        tick = 0;
+        wallHit = -1;
+        distanceRemaining = 0;
+        turnRemaining = 0;
+        overDriving = false;
+        sin = sin(heading);
+        cos = cos(heading);
+    }
+
+    /**
+     * Replace the orders of the prediction, as {@code setAhead}, {@code setTurnRightRadians} etc. would
+     */
+    public void setOrders(double distanceRemaining, double turnRemaining, double maxVelocity, double maxTurnRate) {
+        this.distanceRemaining = distanceRemaining;
+        this.turnRemaining = turnRemaining;
+        this.maxVelocity = maxVelocity;
+        this.maxTurnRate = maxTurnRate;
+    }
+
+    /**
+     * Predict one more tick
+     *
+     * @return false if the buffers are full
+     */
+    public boolean step() {
+        if (tick + 1 >= this.x.length) {
+            return false;
+        }
+        double x = this.x[tick];
+        double y = this.y[tick];
+        double heading = this.heading[tick];
+        double velocity = this.velocity[tick];
+        if (turnRemaining != 0) {
+            double turnRate = min(maxTurnRate, Physics.turnRate(velocity));
+            double turned = turnRemaining > 0 ? min(turnRemaining, turnRate) : max(turnRemaining, -turnRate);
+            turnRemaining -= turned;
+            heading += turned;
+            sin = sin(heading);
+            cos = cos(heading);
+        }
+
+        double distance = distanceRemaining;
+        velocity = Physics.newVelocity(velocity, distance, maxVelocity);
+        if (velocity == 0 && overDriving) {
+            distance = 0;
+            overDriving = false;
+        }
+        if (signum(distance * velocity) != -1) {
+            overDriving = Physics.distanceUntilStop(velocity) > abs(distance);
+        }
+        distanceRemaining = distance - velocity;
+        x += velocity * sin;
+        y += velocity * cos;
+        tick++;
+        if (!Double.isNaN(Physics.stopAtWall(x, y, heading, battleFieldWidth, battleFieldHeight, stop))) {
+            x = stop[0];
+            y = stop[1];
+            velocity = 0;
+            distanceRemaining = 0;
+            if (wallHit < 0) {
+                wallHit = tick;
+            }
+        }
+        this.x[tick] = x;
+        this.y[tick] = y;
+        this.heading[tick] = heading;
+        this.velocity[tick] = velocity;
+        return true;
+    }
+
+    /**
+     * Predict our own movement under our current orders
+     *
+     * @param maxTurnRate turn rate limit set by the robot, in radians
+     */
+    public int predict(AdvancedRobot robot, double maxTurnRate, int ticks) {
+        return predict(robot.getX(), robot.getY(), robot.getHeadingRadians(), robot.getVelocity(),
+                robot.getDistanceRemaining(), robot.getTurnRemainingRadians(), Rules.MAX_VELOCITY, maxTurnRate, ticks);
+    }
+
+    public double x(int tick) {
+        return x[tick];
+    }
+
+    public double y(int tick) {
+        return y[tick];
+    }
+
+    public double heading(int tick) {
+        return heading[tick];
+    }
+
+    public double velocity(int tick) {
+        return velocity[tick];
+    }
+
+    /**
+     * @return number of ticks predicted so far
+     */
+    public int ticks() {
+        return tick;
+    }
+
+    /**
+     * @return the first tick of the prediction at which the robot hit a wall, or -1 if it did not
+     */
+    public int wallHit() {
+        return wallHit;
+    }
+}
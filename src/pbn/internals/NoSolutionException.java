@@ -1,14 +0,0 @@
-package pbn.internals;
-
-/**
- * Created by IntelliJ IDEA.
- * User: pbn
- * Date: 01-06-13
- * Time: 13:09
- * To change this template use File | Settings | File Templates.
- */
-public class NoSolutionException extends Exception{
-    public NoSolutionException(String message) {
-        super(message);
-    }
-}
@@ -0,0 +1,110 @@
+package pbn.internals;
+
+import robocode.AdvancedRobot;
+import robocode.Rules;
+import robocode.annotation.SafeStatic;
+
+import java.awt.geom.Point2D;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+
+/**
+ * Play-it-forward gun: finds the enemy's latest movement earlier in its history, with a {@link PatternMatcher}, and
+ * aims where the enemy went after that.
+ * <p/>
+ * The matchers are kept across rounds, as are the tracks they index, since a pattern learned in one round pays off
+ * in the next ones.
+ */
+public class PatternGun {
+
+    /**
+     * Number of ticks of movement to match
+     */
+    private static final int PATTERN_LENGTH = 10;
+
+    /**
+     * Longest replay, in ticks
+     */
+    private static final int MAX_TICKS = 150;
+
+    @SafeStatic
+    private static final Map<String, PatternMatcher> matchers = new HashMap<String, PatternMatcher>();
+
+    private final AdvancedRobot robot;
+    private final TargetingComputer targetingComputer;
+    private final double minX, minY, maxX, maxY;
+
+    public PatternGun(AdvancedRobot robot, TargetingComputer targetingComputer) {
+        this.robot = robot;
+        this.targetingComputer = targetingComputer;
+        double margin = robot.getWidth() / 2;
+        minX = margin;
+        minY = margin;
+        maxX = robot.getBattleFieldWidth() - margin;
+        maxY = robot.getBattleFieldHeight() - margin;
+    }
+
+    /**
+     * Index the scans added to the track of an enemy. Call after every scan, so no part of the history is
+     * overwritten before it is indexed.
+     */
+    public void record(Track track) {
+        matcher(track).update();
+    }
+
+    /**
+     * @return the matcher of the enemy of a track, a new one if its history is kept in another track
+     */
+    PatternMatcher matcher(Track track) {
+        String name = track.top().name;
+        PatternMatcher matcher = matchers.get(name);
+        if (matcher == null || matcher.track() != track) {
+            matcher = new PatternMatcher(track, PATTERN_LENGTH);
+            matchers.put(name, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Aim at where the target went the last time it moved as it does now
+     *
+     * @param track       Track to aim at
+     * @param firingPoint Point from where the shot will be fired
+     * @param firingTime  Absolute time of shot
+     * @return the shooting solution, or null if the movement was not seen before, or not long enough
+     */
+    public ShootingSolution getShootingSolution(Track track, Point2D firingPoint, long firingTime) {
+        Recording target = track.top();
+        PatternMatcher matcher = matcher(track);
+        double power = targetingComputer.getBulletPower(target, firingPoint.distance(target.position));
+        double bulletSpeed = Rules.getBulletSpeed(power);
+        //long enough for a bullet to catch up with a robot running away at half speed
+        long flightTime = (long) ceil(firingPoint.distance(target.position) / (bulletSpeed - Rules.MAX_VELOCITY / 2));
+        int ticks = (int) min(MAX_TICKS, firingTime - target.time + flightTime);
+        long match = matcher.match(ticks);
+        if (match < 0) {
+            return null;
+        }
+        PatternMatcher.Replay replay = matcher.replay(match, ticks,
+                target.position.getX(), target.position.getY(), target.headingRadians);
+        while (replay.advance()) {
+            long time = target.time + replay.getTicks();
+            if (time <= firingTime) {
+                continue;
+            }
+            double x = max(minX, min(maxX, replay.getX()));
+            double y = max(minY, min(maxY, replay.getY()));
+            double distance = firingPoint.distance(x, y);
+            if (distance <= bulletSpeed * (time - firingTime)) {
+                Point2D targetPos = new Point2D.Double(x, y);
+                DebugGraphics.drawAimLine(robot.getGraphics(), firingPoint, targetPos);
+                double absoluteBearing = TargetingComputer.getAbsoluteBearing(firingPoint, targetPos);
+                return new ShootingSolution(firingPoint, firingTime, targetPos, distance, absoluteBearing, power,
+                        target.name);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,258 @@
+package pbn.internals;
+
+import java.util.Arrays;
+
+import static java.lang.Math.round;
+import static java.lang.Math.toDegrees;
+
+/**
+ * Movement history of one enemy, indexed for pattern matching.
+ * <p/>
+ * The history is the {@link Track} of the enemy, indexed in place. Every tick of it stands for a symbol made of its
+ * velocity and turn rate, quantized. The last k symbols are kept as a rolling hash, and every position is linked into
+ * a chain of the earlier positions that ended a k-gram with the same hash, as in LZ77 hash chains. Finding the latest
+ * k ticks elsewhere in the history then costs a hash lookup and a few k-symbol comparisons, however long the history
+ * is.
+ * <p/>
+ * Positions are the sequence numbers of the entries of the track, so the index drops the oldest ticks as the track
+ * overwrites them. The track fills in short gaps between scans and breaks the history at long gaps and new rounds; no
+ * k-gram or replay spans a break.
+ */
+public class PatternMatcher {
+
+    private static final int MAX_CHAIN = 32;
+    private static final int BREAK = -1;
+    private static final int HASH_BASE = 0x01000193;
+    private static final int VELOCITY_LEVELS = 17;
+    private static final double TURN_STEP_DEG = 2.5;
+
+    private final Track track;
+    private final int k;
+    private final int[] symbols;
+    private final long[] chain;
+    private final long[] heads;
+    private final int headMask;
+    private final int leavingFactor;
+
+    private final Replay replay = new Replay();
+
+    /**
+     * Number of entries of the track indexed
+     */
+    private long indexed;
+    private int run;
+    private int hash;
+
+    /**
+     * @param track history to index
+     * @param k     number of ticks to match
+     */
+    public PatternMatcher(Track track, int k) {
+        this.track = track;
+        this.k = k;
+        symbols = new int[track.slots];
+        chain = new long[track.slots];
+        heads = new long[Integer.highestOneBit(track.capacity) * 2];
+        headMask = heads.length - 1;
+        Arrays.fill(heads, -1);
+        //the leaving symbol is taken out before the hash is shifted, when it weighs HASH_BASE^(k-1)
+        int factor = 1;
+        for (int i = 0; i < k - 1; i++) {
+            factor *= HASH_BASE;
+        }
+        leavingFactor = factor;
+    }
+
+    Track track() {
+        return track;
+    }
+
+    /**
+     * Index the entries added to the track since the last update
+     */
+    public void update() {
+        long written = track.written;
+        if (written - indexed > track.capacity) {
+            //the track overwrote entries before they were indexed: start over from the oldest one it still has
+            indexed = written - track.capacity;
+            run = 0;
+            hash = 0;
+        }
+        for (; indexed < written; indexed++) {
+            index(indexed);
+        }
+    }
+
+    private static int symbol(double velocity, double turnRate) {
+        int v = (int) round(velocity) + VELOCITY_LEVELS / 2;
+        int w = (int) round(toDegrees(turnRate) / TURN_STEP_DEG);
+        return v * 64 + (w + 32);
+    }
+
+    private void index(long position) {
+        int i = track.slot(position);
+        chain[i] = -1;
+        if (track.time[i] == Track.BREAK) {
+            symbols[i] = BREAK;
+            run = 0;
+            hash = 0;
+            return;
+        }
+        int symbol = symbol(track.velocity[i], track.turnRate[i]);
+        symbols[i] = symbol;
+        if (run >= k) {
+            hash -= leavingFactor * symbols[track.slot(position - k)];
+        }
+        hash = hash * HASH_BASE + symbol;
+        run++;
+        if (run >= k) {
+            int head = hash & headMask;
+            chain[i] = heads[head];
+            heads[head] = position;
+        }
+    }
+
+    /**
+     * Find the latest earlier occurrence of the last k ticks that is followed by at least the given number of ticks
+     * of history, without a break
+     *
+     * @return the position of the last tick of the occurrence, to {@link #replay} from, or -1 if there is none
+     */
+    public long match(int ticks) {
+        update();
+        if (run < k) {
+            return -1;
+        }
+        long last = indexed - 1;
+        //the oldest position whose k-gram the track still has
+        long oldest = Math.max(0, indexed - track.capacity) + k - 1;
+        long candidate = chain[track.slot(last)];
+        //candidates too recent to replay from are passed over without counting against the chain limit
+        for (int n = 0; n < MAX_CHAIN && candidate >= oldest && candidate < last; ) {
+            if (candidate + ticks < last) {
+                if (matches(candidate, last) && unbroken(candidate, ticks)) {
+                    return candidate;
+                }
+                n++;
+            }
+            long previous = chain[track.slot(candidate)];
+            if (previous >= candidate) {
+                break; //the slot was reused
+            }
+            candidate = previous;
+        }
+        return -1;
+    }
+
+    private boolean matches(long candidate, long last) {
+        for (int i = 0; i < k; i++) {
+            if (symbols[track.slot(candidate - i)] != symbols[track.slot(last - i)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean unbroken(long from, int ticks) {
+        for (int i = 1; i <= ticks; i++) {
+            if (symbols[track.slot(from + i)] == BREAK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start replaying the ticks after a match. The replay is reused by every call.
+     *
+     * @param match   position returned by {@link #match}
+     * @param ticks   number of ticks that may be replayed
+     * @param x       x at the start
+     * @param y       y at the start
+     * @param heading heading at the start, in radians
+     */
+    public Replay replay(long match, int ticks, double x, double y, double heading) {
+        return replay.start(match, ticks, x, y, heading);
+    }
+
+    /**
+     * Replays the ticks after a match on a starting state, in runs of constant velocity and turn rate that are each
+     * advanced in closed form. Call {@link #advance()} until the replay reaches the wanted time.
+     */
+    public class Replay {
+        private long position;
+        private int remaining;
+        private double x, y;
+        private int ticks;
+
+        private double runX, runY, runHeading;
+        private double runVelocity, runTurnRate;
+        private int runLength;
+        private int runTicks;
+
+        private Replay start(long match, int ticks, double x, double y, double heading) {
+            this.position = match + 1;
+            this.remaining = ticks;
+            this.x = x;
+            this.y = y;
+            this.ticks = 0;
+            runHeading = heading;
+            runTurnRate = 0;
+            runLength = 0;
+            runTicks = 0;
+            return this;
+        }
+
+        /**
+         * Advance one tick
+         *
+         * @return false if the replay is out of ticks
+         */
+        public boolean advance() {
+            if (runTicks == runLength) {
+                if (remaining == 0) {
+                    return false;
+                }
+                runX = x;
+                runY = y;
+                runHeading += runTurnRate * runLength;
+                int i = track.slot(position);
+                runVelocity = track.velocity[i];
+                runTurnRate = track.turnRate[i];
+                runLength = 1;
+                while (runLength < remaining
+                        && track.velocity[track.slot(position + runLength)] == runVelocity
+                        && track.turnRate[track.slot(position + runLength)] == runTurnRate) {
+                    runLength++;
+                }
+                position += runLength;
+                remaining -= runLength;
+                runTicks = 0;
+            }
+            runTicks++;
+            ticks++;
+            x = runX + Prediction.dx(runHeading, runTurnRate, runVelocity, runTicks);
+            y = runY + Prediction.dy(runHeading, runTurnRate, runVelocity, runTicks);
+            return true;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        /**
+         * @return number of ticks replayed
+         */
+        public int getTicks() {
+            return ticks;
+        }
+    }
+
+    public int size() {
+        return (int) Math.min(indexed, track.capacity);
+    }
+}
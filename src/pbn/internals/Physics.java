@@ -0,0 +1,143 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import static java.lang.Math.*;
+
+/**
+ * Robot movement rules as the Robocode engine applies them each turn: acceleration of 1, deceleration of 2, braking
+ * so the robot stops exactly at the end of the remaining distance, a turn rate that drops with speed, and the stop at
+ * a wall.
+ */
+public abstract class Physics {
+
+    /**
+     * Distance from the center of a robot to the walls it stops at
+     */
+    public static final double HALF_ROBOT_SIZE = 18;
+
+    /**
+     * @param velocity    velocity this turn
+     * @param distance    distance remaining, negative when moving backwards
+     * @param maxVelocity velocity limit set by the robot
+     * @return the velocity next turn
+     */
+    public static double newVelocity(double velocity, double distance, double maxVelocity) {
+        if (distance < 0) {
+            return -newVelocity(-velocity, -distance, maxVelocity);
+        }
+        double goal = distance == Double.POSITIVE_INFINITY ? maxVelocity : min(maxVelocity(distance), maxVelocity);
+        if (velocity >= 0) {
+            return max(velocity - Rules.DECELERATION, min(goal, velocity + Rules.ACCELERATION));
+        }
+        return max(velocity - Rules.ACCELERATION, min(goal, velocity + maxDeceleration(-velocity)));
+    }
+
+    /**
+     * @return the highest velocity from which the robot can still stop within the given distance
+     */
+    public static double maxVelocity(double distance) {
+        double decelerationTime = max(1, ceil((sqrt((4 * 2 / Rules.DECELERATION) * distance + 1) - 1) / 2));
+        if (decelerationTime == Double.POSITIVE_INFINITY) {
+            return Rules.MAX_VELOCITY;
+        }
+        double decelerationDistance = (decelerationTime / 2) * (decelerationTime - 1) * Rules.DECELERATION;
+        return ((decelerationTime - 1) * Rules.DECELERATION) + ((distance - decelerationDistance) / decelerationTime);
+    }
+
+    /**
+     * Speed change when reversing: decelerate to 0, then accelerate for the rest of the turn
+     */
+    private static double maxDeceleration(double speed) {
+        double decelerationTime = speed / Rules.DECELERATION;
+        double accelerationTime = 1 - decelerationTime;
+        return min(1, decelerationTime) * Rules.DECELERATION + max(0, accelerationTime) * Rules.ACCELERATION;
+    }
+
+    /**
+     * @return the distance covered while braking from the given velocity to a stop
+     */
+    public static double distanceUntilStop(double velocity) {
+        double speed = abs(velocity);
+        double distance = 0;
+        while (speed > 0) {
+            speed = newVelocity(speed, 0, Rules.MAX_VELOCITY);
+            distance += speed;
+        }
+        return distance;
+    }
+
+    /**
+     * @return the number of ticks it takes to move the given distance in a straight line, starting and ending at rest
+     */
+    public static int travelTime(double distance) {
+        double remaining = abs(distance);
+        double velocity = 0;
+        int ticks = 0;
+        while (remaining > 0) {
+            velocity = newVelocity(velocity, remaining, Rules.MAX_VELOCITY);
+            if (velocity <= 0) {
+                break;
+            }
+            remaining -= velocity;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * @return the maximum body turn rate in radians at the given velocity
+     */
+    public static double turnRate(double velocity) {
+        return (0.4 + 0.6 * (1 - abs(velocity) / Rules.MAX_VELOCITY)) * Rules.MAX_TURN_RATE_RADIANS;
+    }
+
+    /**
+     * Stop a robot that moved into a wall as the engine does: move it back along its heading until it is on the wall,
+     * then keep it within the battlefield. The walls are at whole coordinates, and a robot on the near walls has hit
+     * them.
+     *
+     * @param x       x after the move
+     * @param y       y after the move
+     * @param heading heading of the move, in radians
+     * @param stop    receives x and y where the robot stops
+     * @return the direction of the wall that was hit, in radians, or NaN if the robot is clear of the walls
+     */
+    public static double stopAtWall(double x, double y, double heading,
+                                    double battleFieldWidth, double battleFieldHeight, double[] stop) {
+        double minX = HALF_ROBOT_SIZE;
+        double minY = HALF_ROBOT_SIZE;
+        double maxX = (int) battleFieldWidth - HALF_ROBOT_SIZE;
+        double maxY = (int) battleFieldHeight - HALF_ROBOT_SIZE;
+        double adjustX = 0;
+        double adjustY = 0;
+        double wall;
+        if (x <= minX) {
+            adjustX = minX - x;
+            wall = 3 * PI / 2;
+        } else if (x > maxX) {
+            adjustX = maxX - x;
+            wall = PI / 2;
+        } else if (y <= minY) {
+            adjustY = minY - y;
+            wall = PI;
+        } else if (y > maxY) {
+            adjustY = maxY - y;
+            wall = 0;
+        } else {
+            return Double.NaN;
+        }
+        //hitting a wall at an angle, the other coordinate moves back along the heading too
+        if (heading % (PI / 2) != 0) {
+            double tanHeading = tan(heading);
+            if (adjustX == 0) {
+                adjustX = adjustY * tanHeading;
+            } else {
+                adjustY = adjustX / tanHeading;
+            }
+        }
+        stop[0] = max(minX, min(maxX, x + adjustX));
+        stop[1] = max(minY, min(maxY, y + adjustY));
+        return wall;
+    }
+}
@@ -0,0 +1,17 @@
+package pbn.internals;
+
+/**
+ * Something whose position can be predicted at a given time
+ */
+public interface Predictable {
+
+    /**
+     * Predicted x coordinate at the given (absolute) time
+     */
+    double x(long time);
+
+    /**
+     * Predicted y coordinate at the given (absolute) time
+     */
+    double y(long time);
+}
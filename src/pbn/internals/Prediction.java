@@ -0,0 +1,70 @@
+package pbn.internals;
+
+import static java.lang.Math.*;
+
+/**
+ * Closed form prediction of robots moving with constant velocity and constant turn rate.
+ * <p/>
+ * A robot at heading h, turning w radians and moving v pixels per tick covers
+ * sum(t = 0 .. n-1) of v * (sin(h + w * t), cos(h + w * t)) in n ticks. That sum collapses to
+ * v * sin(n * w / 2) / sin(w / 2) * (sin(m), cos(m)), with m = h + w * (n - 1) / 2 being the mean heading,
+ * so a prediction costs the same no matter how far ahead we look.
+ */
+public abstract class Prediction {
+
+    /**
+     * Below this turn rate the movement is treated as a straight line
+     */
+    private static final double STRAIGHT_LINE_TURN_RATE = 1e-9;
+
+    /**
+     * The length of a chord of n unit steps along the arc, i.e. sin(n * w / 2) / sin(w / 2).
+     * Degenerates to n for straight lines.
+     *
+     * @param turnRate turn rate in radians per tick
+     * @param ticks    number of ticks to advance
+     * @return the length of the advanced chord, relative to the velocity
+     */
+    public static double chordFactor(double turnRate, long ticks) {
+        if (ticks <= 0) {
+            return 0;
+        }
+        if (abs(turnRate) < STRAIGHT_LINE_TURN_RATE) {
+            return ticks;
+        }
+        double halfTurn = turnRate / 2;
+        return sin(ticks * halfTurn) / sin(halfTurn);
+    }
+
+    /**
+     * The heading of the chord covered in the given number of ticks
+     *
+     * @param heading  heading at the start, in radians
+     * @param turnRate turn rate in radians per tick
+     * @param ticks    number of ticks to advance
+     * @return absolute direction from start to end point (radians)
+     */
+    public static double chordHeading(double heading, double turnRate, long ticks) {
+        return heading + turnRate * (ticks - 1) / 2;
+    }
+
+    /**
+     * Displacement along the x axis after the given number of ticks
+     */
+    public static double dx(double heading, double turnRate, double velocity, long ticks) {
+        if (ticks <= 0) {
+            return 0;
+        }
+        return velocity * chordFactor(turnRate, ticks) * sin(chordHeading(heading, turnRate, ticks));
+    }
+
+    /**
+     * Displacement along the y axis after the given number of ticks
+     */
+    public static double dy(double heading, double turnRate, double velocity, long ticks) {
+        if (ticks <= 0) {
+            return 0;
+        }
+        return velocity * chordFactor(turnRate, ticks) * cos(chordHeading(heading, turnRate, ticks));
+    }
+}
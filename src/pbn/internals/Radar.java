@@ -0,0 +1,285 @@
+package pbn.internals;
+
+import robocode.AdvancedRobot;
+import robocode.Rules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * Radar that keeps the data on every enemy fresh with as little turning as possible.
+ * <p/>
+ * The enemies are kept in a binary min-heap on when they are due for a scan, so a scan costs O(log n) and the enemy
+ * most overdue is always on top. An enemy is due a full radar turn after it was last seen. Given a
+ * {@link GunHeatTracker}, an enemy whose gun is still hot then is not due before it may fire again, so the radar spends
+ * its turns on the enemies that can shoot, and their shots are seen sooner.
+ * <p/>
+ * Until every enemy is known the radar spins. Then it takes the enemies that are overdue, or the ones most overdue if
+ * none is yet, finds the smallest arc that holds their bearings, and turns the short way to the nearer end of it. It
+ * stops just past that enemy, scanning the enemies on the way as it passes them, and goes on from there with the
+ * enemies still due, which sweeps the arc to its other end. With one enemy left it narrows to a lock, sweeping just
+ * past the enemy every tick.
+ */
+public class Radar {
+
+    private static final double ROBOT_WIDTH = 36;
+    /**
+     * Ticks a full radar turn takes
+     */
+    private static final long REVISIT_TICKS = (long) ceil(2 * PI / Rules.RADAR_TURN_RATE_RADIANS);
+
+    private final AdvancedRobot robot;
+    private final GunHeatTracker gunHeat;
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    private String[] names = new String[8];
+    private Predictable[] entries = new Predictable[8];
+    private long[] due = new long[8];
+    private int size;
+
+    private int[] arcIndices = new int[8];
+    private double[] arcTurns = new double[8];
+    private int arcSize;
+
+    private String lookingFor;
+    private double direction = 1;
+
+    public Radar(AdvancedRobot robot) {
+        this(robot, null);
+    }
+
+    /**
+     * @param gunHeat gun heat model of the enemies, or null to scan the stalest enemy first
+     */
+    public Radar(AdvancedRobot robot, GunHeatTracker gunHeat) {
+        this.robot = robot;
+        this.gunHeat = gunHeat;
+    }
+
+    /**
+     * Insert or replace the entry of a robot that was scanned. Scan enemies after the {@link GunHeatTracker} was told
+     * about their shots.
+     *
+     * @param time time of the scan
+     */
+    public void scanned(String name, Predictable entry, long time) {
+        Integer index = indices.get(name);
+        int i;
+        if (index == null) {
+            if (size == names.length) {
+                grow();
+            }
+            i = size++;
+            names[i] = name;
+            indices.put(name, i);
+        } else {
+            i = index;
+        }
+        entries[i] = entry;
+        due[i] = time + REVISIT_TICKS;
+        if (gunHeat != null) {
+            long shot = gunHeat.earliestShot(name);
+            if (shot > due[i]) {
+                due[i] = shot;
+            }
+        }
+        siftDown(siftUp(i));
+        if (name.equals(lookingFor)) {
+            lookingFor = null;
+        }
+    }
+
+    /**
+     * Remove a robot, e.g. when it dies
+     */
+    public void forget(String name) {
+        Integer index = indices.remove(name);
+        if (index == null) {
+            return;
+        }
+        int i = index;
+        int last = --size;
+        if (i != last) {
+            move(last, i);
+            siftDown(siftUp(i));
+        }
+        names[last] = null;
+        entries[last] = null;
+        if (name.equals(lookingFor)) {
+            lookingFor = null;
+        }
+    }
+
+    /**
+     * Set the radar turn for this tick. Call once per tick, after the scans of the tick were handled.
+     */
+    public void sweep() {
+        if (size == 0 || size < robot.getOthers()) {
+            robot.setTurnRadarRightRadians(direction * Double.POSITIVE_INFINITY);
+            return;
+        }
+        if (size == 1) {
+            //lock: turn past the enemy, so the scan arc covers all of it
+            double turn = turn(0);
+            direction = turn < 0 ? -1 : 1;
+            robot.setTurnRadarRightRadians(turn + direction * overshoot(0));
+            return;
+        }
+        if (lookingFor == null) {
+            //seen the one we were looking for: look for the nearer end of the smallest arc over the ones overdue
+            int next = nearerEnd();
+            lookingFor = names[next];
+            direction = turn(next) < 0 ? -1 : 1;
+        }
+        int looking = indices.get(lookingFor);
+        double turn = turn(looking);
+        if (turn * direction > 0) {
+            //stop just past it
+            robot.setTurnRadarRightRadians(turn + direction * overshoot(looking));
+        } else {
+            //not where we expected it: keep turning until we see it
+            robot.setTurnRadarRightRadians(direction * Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Radar turn past the predicted position of an entry, for the scan arc to cover all of it
+     */
+    private double overshoot(int i) {
+        long time = robot.getTime();
+        double distance = hypot(entries[i].x(time + 1) - robot.getX(), entries[i].y(time + 1) - robot.getY());
+        return min(atan(ROBOT_WIDTH / max(ROBOT_WIDTH, distance)), Rules.RADAR_TURN_RATE_RADIANS);
+    }
+
+    /**
+     * Radar turn to the predicted position of an entry next tick
+     */
+    private double turn(int i) {
+        long time = robot.getTime();
+        double dx = entries[i].x(time + 1) - robot.getX();
+        double dy = entries[i].y(time + 1) - robot.getY();
+        return normalRelativeAngle(FastMath.atan2(dx, dy) - robot.getRadarHeadingRadians());
+    }
+
+    /**
+     * Of the smallest arc holding the entries that are overdue, or due as soon as the top one, the end with the
+     * shorter radar turn. Turning to it and on to the other end sweeps all of them.
+     */
+    private int nearerEnd() {
+        arcSize = 0;
+        collect(0, max(due[0], robot.getTime()));
+        //sort them by turn
+        for (int j = 1; j < arcSize; j++) {
+            int index = arcIndices[j];
+            double turn = arcTurns[j];
+            int k = j;
+            for (; k > 0 && arcTurns[k - 1] > turn; k--) {
+                arcIndices[k] = arcIndices[k - 1];
+                arcTurns[k] = arcTurns[k - 1];
+            }
+            arcIndices[k] = index;
+            arcTurns[k] = turn;
+        }
+        //the arc is the circle without the widest gap between neighbours
+        int start = 0;
+        double widest = arcTurns[0] + 2 * PI - arcTurns[arcSize - 1];
+        for (int j = 1; j < arcSize; j++) {
+            double gap = arcTurns[j] - arcTurns[j - 1];
+            if (gap > widest) {
+                widest = gap;
+                start = j;
+            }
+        }
+        int end = (start + arcSize - 1) % arcSize;
+        return abs(arcTurns[start]) <= abs(arcTurns[end]) ? arcIndices[start] : arcIndices[end];
+    }
+
+    /**
+     * Collect the entries in the subtree of the heap at i that are due by the given time
+     */
+    private void collect(int i, long time) {
+        if (i >= size || due[i] > time) {
+            return;
+        }
+        arcIndices[arcSize] = i;
+        arcTurns[arcSize++] = turn(i);
+        collect(2 * i + 1, time);
+        collect(2 * i + 2, time);
+    }
+
+    /**
+     * @return name of the enemy most overdue for a scan, or null if none is known
+     */
+    public String next() {
+        return size == 0 ? null : names[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (due[parent] <= due[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+        return i;
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && due[child + 1] < due[child]) {
+                child++;
+            }
+            if (due[i] <= due[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String name = names[i];
+        Predictable entry = entries[i];
+        long dueTime = due[i];
+        move(j, i);
+        names[j] = name;
+        entries[j] = entry;
+        due[j] = dueTime;
+        indices.put(name, j);
+    }
+
+    private void move(int from, int to) {
+        names[to] = names[from];
+        entries[to] = entries[from];
+        due[to] = due[from];
+        indices.put(names[to], to);
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        String[] names = new String[capacity];
+        Predictable[] entries = new Predictable[capacity];
+        long[] due = new long[capacity];
+        System.arraycopy(this.names, 0, names, 0, size);
+        System.arraycopy(this.entries, 0, entries, 0, size);
+        System.arraycopy(this.due, 0, due, 0, size);
+        this.names = names;
+        this.entries = entries;
+        this.due = due;
+        arcIndices = new int[capacity];
+        arcTurns = new double[capacity];
+    }
+}
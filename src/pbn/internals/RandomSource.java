@@ -0,0 +1,25 @@
+package pbn.internals;
+
+import robocode.util.Utils;
+
+import java.util.Random;
+
+/**
+ * Source of randomness for the robots. Uses Robocode's random generator, unless a seed was set, e.g. by the headless
+ * simulator to make a battle reproducible.
+ */
+public abstract class RandomSource {
+
+    private static Random seeded;
+
+    /**
+     * Make every subsequent {@link #get()} return one generator with the given seed
+     */
+    public static void seed(long seed) {
+        seeded = new Random(seed);
+    }
+
+    public static Random get() {
+        return seeded != null ? seeded : Utils.getRandom();
+    }
+}
@@ -6,13 +6,11 @@ import robocode.ScannedRobotEvent;
 import java.awt.geom.Point2D;
 
 import static java.lang.Math.*;
-import static pbn.internals.TargetingComputer.dx;
-import static pbn.internals.TargetingComputer.dy;
 import static robocode.util.Utils.normalAbsoluteAngle;
 
 /**
  */
-public class Recording {
+public class Recording implements Predictable {
     public final long time;
     public final Point2D position;
     public final double
@@ -20,6 +18,7 @@ public class Recording {
             turnRate,
             headingRadians;
     public final String name;
+    private Trajectory trajectory;
     public final  double energy;
 
     public static Recording record(Robot robot, ScannedRobotEvent event, Recording previous) {
@@ -44,6 +43,12 @@ public class Recording {
         } else {
             turnRate = 0;
         }
+        trajectory = Trajectory.reuse(previous == null ? null : previous.trajectory,
+                Trajectory.horizon(me.getBattleFieldWidth(), me.getBattleFieldHeight()));
+        if (previous != null) {
+            previous.trajectory = null; //handed over to the newest recording
+        }
+        trajectory.fill(time, x, y, headingRadians, turnRate, velocity);
 
     }
 
@@ -52,15 +57,29 @@ public class Recording {
     }
 
     public Point2D advance(long time) {
-        long dt = time - this.time;
-        //iterative, because i'm stupid
-        double dx = 0;
-        double dy = 0;
-        for (long t = 0; t < dt; t++) {
-            dx += dx(headingRadians + turnRate * t) * velocity;
-            dy += dy(headingRadians + turnRate * t) * velocity;
+        return new Point2D.Double(x(time), y(time));
+    }
+
+    /**
+     * Predicted x coordinate at the given time, assuming constant velocity and turn rate
+     */
+    @Override
+    public double x(long time) {
+        if (trajectory != null) {
+            return trajectory.x(time);
+        }
+        return position.getX() + Prediction.dx(headingRadians, turnRate, velocity, time - this.time);
+    }
+
+    /**
+     * Predicted y coordinate at the given time, assuming constant velocity and turn rate
+     */
+    @Override
+    public double y(long time) {
+        if (trajectory != null) {
+            return trajectory.y(time);
         }
-        return new Point2D.Double(position.getX() + dx, position.getY() + dy);
+        return position.getY() + Prediction.dy(headingRadians, turnRate, velocity, time - this.time);
     }
 
     @Override
@@ -0,0 +1,186 @@
+package pbn.internals;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Segmented histograms, e.g. guess-factor statistics segmented by velocity and bullet power.
+ * <p/>
+ * All segments live in one flat double array. Segment coordinates are clamped into range, so any input maps to a
+ * valid segment. With a decay rate, every update scales the older data of the segment by (1 - rate); this is done
+ * lazily by growing the weight of new data instead, so an update is O(1). The fullest bin of each segment is
+ * maintained on update, making {@link #bestBin(int)} O(1).
+ */
+public class SegmentedHistogram {
+
+    private static final double RENORMALIZE_LIMIT = 1e100;
+
+    private final int[] dimensions;
+    private final int bins;
+    private final double decay;
+    private final double[] data;
+    private final double[] scale;
+    private final int[] best;
+
+    /**
+     * @param dimensions number of segments along each segmentation axis
+     * @param bins       number of bins per segment
+     * @param decayRate  fraction of the old data forgotten per update, 0 to never forget
+     */
+    public SegmentedHistogram(int[] dimensions, int bins, double decayRate) {
+        this.dimensions = dimensions.clone();
+        this.bins = bins;
+        this.decay = 1 / (1 - decayRate);
+        int segments = 1;
+        for (int dimension : dimensions) {
+            segments *= dimension;
+        }
+        this.data = new double[segments * bins];
+        this.scale = new double[segments];
+        this.best = new int[segments];
+        for (int i = 0; i < segments; i++) {
+            scale[i] = 1;
+            best[i] = bins / 2;
+        }
+    }
+
+    /**
+     * Offset of a segment along a single axis
+     */
+    public int offset(int s0) {
+        return clamp(s0, 0) * bins;
+    }
+
+    /**
+     * Offset of a segment along two axes
+     */
+    public int offset(int s0, int s1) {
+        return (clamp(s0, 0) * dimensions[1] + clamp(s1, 1)) * bins;
+    }
+
+    /**
+     * Offset of a segment along three axes
+     */
+    public int offset(int s0, int s1, int s2) {
+        return ((clamp(s0, 0) * dimensions[1] + clamp(s1, 1)) * dimensions[2] + clamp(s2, 2)) * bins;
+    }
+
+    private int clamp(int coordinate, int axis) {
+        return max(0, min(dimensions[axis] - 1, coordinate));
+    }
+
+    /**
+     * Add to a bin of the segment at the given offset
+     */
+    public void add(int offset, int bin, double weight) {
+        int segment = offset / bins;
+        bin = max(0, min(bins - 1, bin));
+        double s = scale[segment] * decay;
+        if (s > RENORMALIZE_LIMIT) {
+            double old = scale[segment];
+            for (int i = offset; i < offset + bins; i++) {
+                data[i] /= old;
+            }
+            s = decay;
+        }
+        scale[segment] = s;
+        data[offset + bin] += weight * s;
+        if (data[offset + bin] > data[offset + best[segment]]) {
+            best[segment] = bin;
+        }
+    }
+
+    /**
+     * @return the fullest bin of the segment at the given offset
+     */
+    public int bestBin(int offset) {
+        return best[offset / bins];
+    }
+
+    /**
+     * @return the (decayed) value of a bin
+     */
+    public double get(int offset, int bin) {
+        return data[offset + bin] / scale[offset / bins];
+    }
+
+    public int bins() {
+        return bins;
+    }
+
+    /**
+     * Map a guess factor in [-1, 1] to a bin
+     */
+    public int bin(double guessFactor) {
+        return (int) Math.round((bins - 1) / 2. * (max(-1, min(1, guessFactor)) + 1));
+    }
+
+    /**
+     * Map a bin to its guess factor in [-1, 1]
+     */
+    public double guessFactor(int bin) {
+        return (double) (bin - (bins - 1) / 2) / ((bins - 1) / 2);
+    }
+
+    /**
+     * Write the shape and the (decayed) contents, as floats to save space
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(dimensions.length);
+        for (int dimension : dimensions) {
+            out.writeShort(dimension);
+        }
+        out.writeShort(bins);
+        for (int i = 0; i < data.length; i++) {
+            out.writeFloat((float) (data[i] / scale[i / bins]));
+        }
+    }
+
+    /**
+     * Add previously {@link #write written} contents to this histogram. Data of a different shape is skipped.
+     *
+     * @return true if the data was merged
+     */
+    public boolean merge(DataInput in) throws IOException {
+        int axes = in.readByte();
+        boolean sameShape = axes == dimensions.length;
+        int cells = 1;
+        for (int axis = 0; axis < axes; axis++) {
+            int dimension = in.readShort();
+            sameShape &= axis < dimensions.length && dimensions[axis] == dimension;
+            cells *= dimension;
+        }
+        int storedBins = in.readShort();
+        sameShape &= storedBins == bins;
+        cells *= storedBins;
+        if (!sameShape) {
+            in.skipBytes(cells * 4);
+            return false;
+        }
+        for (int i = 0; i < data.length; i++) {
+            int segment = i / bins;
+            data[i] += in.readFloat() * scale[segment];
+            if (data[i] > data[segment * bins + best[segment]]) {
+                best[segment] = i - segment * bins;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skip over previously {@link #write written} contents
+     */
+    public static void skip(DataInput in) throws IOException {
+        int axes = in.readByte();
+        int cells = 1;
+        for (int axis = 0; axis < axes; axis++) {
+            cells *= in.readShort();
+        }
+        cells *= in.readShort();
+        in.skipBytes(cells * 4);
+    }
+}
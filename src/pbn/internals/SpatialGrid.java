@@ -0,0 +1,229 @@
+package pbn.internals;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+
+/**
+ * Uniform grid over robot positions on the battlefield, for neighbour counts and line of fire checks.
+ * <p/>
+ * Points are added with an id, after which {@link #build()} sorts them into cells (counting sort into flat arrays,
+ * no allocation once the buffers have grown). The cell size should be at least a robot width, so a robot box only
+ * ever overlaps the 3x3 cells around the cell of its center.
+ */
+public class SpatialGrid {
+
+    public static final double BOT_HALF_SIZE = 18;
+
+    private final double cellSize;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellFill;
+
+    private int[] ids = new int[16];
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private int[] cellOf = new int[16];
+    private int[] sorted = new int[16];
+    private int size;
+
+    private double hitDistance;
+
+    public SpatialGrid(double width, double height, double cellSize) {
+        this.cellSize = max(cellSize, 2 * BOT_HALF_SIZE);
+        this.columns = max(1, (int) ceil(width / this.cellSize));
+        this.rows = max(1, (int) ceil(height / this.cellSize));
+        this.cellStart = new int[columns * rows + 1];
+        this.cellFill = new int[columns * rows];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int id, double pointX, double pointY) {
+        if (size == ids.length) {
+            grow();
+        }
+        ids[size] = id;
+        x[size] = pointX;
+        y[size] = pointY;
+        size++;
+    }
+
+    /**
+     * Sort the added points into their cells. Must be called before querying.
+     */
+    public void build() {
+        Arrays.fill(cellFill, 0);
+        for (int i = 0; i < size; i++) {
+            int cell = column(x[i]) + row(y[i]) * columns;
+            cellOf[i] = cell;
+            cellFill[cell]++;
+        }
+        int start = 0;
+        for (int c = 0; c < cellFill.length; c++) {
+            cellStart[c] = start;
+            start += cellFill[c];
+            cellFill[c] = cellStart[c];
+        }
+        cellStart[cellFill.length] = start;
+        for (int i = 0; i < size; i++) {
+            sorted[cellFill[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Number of points strictly closer than the given radius to a position
+     */
+    public int countWithin(double atX, double atY, double radius) {
+        double radiusSq = radius * radius;
+        int count = 0;
+        int minColumn = column(atX - radius);
+        int maxColumn = column(atX + radius);
+        int minRow = row(atY - radius);
+        int maxRow = row(atY + radius);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minColumn; c <= maxColumn; c++) {
+                int cell = c + r * columns;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = sorted[k];
+                    double dX = x[i] - atX;
+                    double dY = y[i] - atY;
+                    if (dX * dX + dY * dY < radiusSq) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the first robot box hit by a ray. The distance to the hit is available from {@link #getHitDistance()}.
+     *
+     * @param fromX       start of the ray
+     * @param fromY       start of the ray
+     * @param bearing     absolute bearing of the ray (radians, robocode convention)
+     * @param maxDistance length of the ray
+     * @param ignore      id to ignore (e.g. ourselves), or -1
+     * @return id of the first robot hit, or -1 if none
+     */
+    public int firstHit(double fromX, double fromY, double bearing, double maxDistance, int ignore) {
+        double dirX = sin(bearing);
+        double dirY = cos(bearing);
+        int column = column(fromX);
+        int row = row(fromY);
+        int stepColumn = dirX > 0 ? 1 : -1;
+        int stepRow = dirY > 0 ? 1 : -1;
+        //distance along the ray to the next cell border, and between borders
+        double nextColumnT = dirX == 0 ? Double.POSITIVE_INFINITY
+                : ((column + (dirX > 0 ? 1 : 0)) * cellSize - fromX) / dirX;
+        double nextRowT = dirY == 0 ? Double.POSITIVE_INFINITY
+                : ((row + (dirY > 0 ? 1 : 0)) * cellSize - fromY) / dirY;
+        double columnStepT = dirX == 0 ? Double.POSITIVE_INFINITY : cellSize / abs(dirX);
+        double rowStepT = dirY == 0 ? Double.POSITIVE_INFINITY : cellSize / abs(dirY);
+
+        int best = -1;
+        double bestT = maxDistance;
+        while (true) {
+            for (int r = max(0, row - 1); r <= min(rows - 1, row + 1); r++) {
+                for (int c = max(0, column - 1); c <= min(columns - 1, column + 1); c++) {
+                    int cell = c + r * columns;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = sorted[k];
+                        if (ids[i] == ignore) {
+                            continue;
+                        }
+                        double t = rayBox(fromX, fromY, dirX, dirY, x[i], y[i]);
+                        if (t < bestT) {
+                            bestT = t;
+                            best = ids[i];
+                        }
+                    }
+                }
+            }
+            double exitT = min(nextColumnT, nextRowT);
+            // every box hit before this cell's exit has been seen in this or a previous cell
+            if (best >= 0 && bestT <= exitT) {
+                break;
+            }
+            if (exitT > maxDistance) {
+                break;
+            }
+            if (nextColumnT < nextRowT) {
+                column += stepColumn;
+                nextColumnT += columnStepT;
+            } else {
+                row += stepRow;
+                nextRowT += rowStepT;
+            }
+            if (column < 0 || column >= columns || row < 0 || row >= rows) {
+                break;
+            }
+        }
+        hitDistance = best < 0 ? Double.POSITIVE_INFINITY : bestT;
+        return best;
+    }
+
+    /**
+     * Slab test of a ray against a robot box
+     *
+     * @return distance along the ray to the box, or infinity if missed
+     */
+    private static double rayBox(double fromX, double fromY, double dirX, double dirY, double boxX, double boxY) {
+        double tMin = 0;
+        double tMax = Double.POSITIVE_INFINITY;
+        if (dirX != 0) {
+            double t1 = (boxX - BOT_HALF_SIZE - fromX) / dirX;
+            double t2 = (boxX + BOT_HALF_SIZE - fromX) / dirX;
+            tMin = max(tMin, min(t1, t2));
+            tMax = min(tMax, max(t1, t2));
+        } else if (abs(fromX - boxX) > BOT_HALF_SIZE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (dirY != 0) {
+            double t1 = (boxY - BOT_HALF_SIZE - fromY) / dirY;
+            double t2 = (boxY + BOT_HALF_SIZE - fromY) / dirY;
+            tMin = max(tMin, min(t1, t2));
+            tMax = min(tMax, max(t1, t2));
+        } else if (abs(fromY - boxY) > BOT_HALF_SIZE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return tMin <= tMax ? tMin : Double.POSITIVE_INFINITY;
+    }
+
+    private int column(double pointX) {
+        return max(0, min(columns - 1, (int) floor(pointX / cellSize)));
+    }
+
+    private int row(double pointY) {
+        return max(0, min(rows - 1, (int) floor(pointY / cellSize)));
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        int[] newIds = new int[capacity];
+        double[] newX = new double[capacity];
+        double[] newY = new double[capacity];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        System.arraycopy(x, 0, newX, 0, size);
+        System.arraycopy(y, 0, newY, 0, size);
+        ids = newIds;
+        x = newX;
+        y = newY;
+        cellOf = new int[capacity];
+        sorted = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return distance to the robot found by the last {@link #firstHit}, or infinity if none
+     */
+    public double getHitDistance() {
+        return hitDistance;
+    }
+}
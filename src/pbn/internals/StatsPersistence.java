@@ -0,0 +1,143 @@
+package pbn.internals;
+
+import robocode.AdvancedRobot;
+import robocode.RobocodeFileOutputStream;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves learned opponent statistics in the robot data directory, one gzipped file per opponent.
+ * <p/>
+ * File format: magic, version, number of tables, then for each table its name followed by the table as written by
+ * {@link SegmentedHistogram#write}. Tables are registered as opponents are first seen, and their files are merged in
+ * a few at a time from {@link #loadPending} so the first ticks of a battle are not spent reading files.
+ * Keep an instance in a static field, it is meant to live for the whole battle.
+ */
+public class StatsPersistence {
+
+    private static final int MAGIC = 0x50424e53; // "PBNS"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".stats";
+
+    private final Map<String, Map<String, SegmentedHistogram>> tables = new HashMap<String, Map<String, SegmentedHistogram>>();
+    private final Set<String> loaded = new HashSet<String>();
+    private final Deque<String> pending = new ArrayDeque<String>();
+
+    /**
+     * Register a table for an opponent. The first registration for an opponent queues its file for loading.
+     */
+    public void register(String opponent, String table, SegmentedHistogram histogram) {
+        Map<String, SegmentedHistogram> opponentTables = tables.get(opponent);
+        if (opponentTables == null) {
+            opponentTables = new LinkedHashMap<String, SegmentedHistogram>();
+            tables.put(opponent, opponentTables);
+        }
+        opponentTables.put(table, histogram);
+        if (!loaded.contains(opponent) && !pending.contains(opponent)) {
+            pending.add(opponent);
+        }
+    }
+
+    /**
+     * Load at most the given number of queued opponent files
+     */
+    public void loadPending(AdvancedRobot robot, int maxFiles) {
+        for (int i = 0; i < maxFiles && !pending.isEmpty(); i++) {
+            String opponent = pending.poll();
+            loaded.add(opponent);
+            load(robot, opponent);
+        }
+    }
+
+    private void load(AdvancedRobot robot, String opponent) {
+        File file = robot.getDataFile(fileName(opponent));
+        if (file == null || !file.exists() || file.length() == 0) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                return;
+            }
+            Map<String, SegmentedHistogram> opponentTables = tables.get(opponent);
+            int count = in.readUnsignedByte();
+            for (int i = 0; i < count; i++) {
+                String table = in.readUTF();
+                SegmentedHistogram histogram = opponentTables.get(table);
+                if (histogram == null) {
+                    SegmentedHistogram.skip(in); //table no longer in use
+                } else {
+                    histogram.merge(in);
+                }
+            }
+        } catch (IOException e) {
+            robot.out.println("Unable to load statistics for " + opponent + ": " + e.getMessage());
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Write the tables of every opponent seen so far, as far as the data quota allows
+     */
+    public void save(AdvancedRobot robot) {
+        for (Map.Entry<String, Map<String, SegmentedHistogram>> entry : tables.entrySet()) {
+            String opponent = entry.getKey();
+            if (!loaded.contains(opponent)) {
+                continue; //never merged the old file, writing now would overwrite it
+            }
+            byte[] bytes;
+            try {
+                bytes = serialize(entry.getValue());
+            } catch (IOException e) {
+                continue;
+            }
+            File file = robot.getDataFile(fileName(opponent));
+            long available = robot.getDataQuotaAvailable() + (file.exists() ? file.length() : 0);
+            if (bytes.length > available) {
+                robot.out.println("Not enough data quota to save statistics for " + opponent);
+                continue;
+            }
+            OutputStream out = null;
+            try {
+                out = new RobocodeFileOutputStream(file);
+                out.write(bytes);
+            } catch (IOException e) {
+                robot.out.println("Unable to save statistics for " + opponent + ": " + e.getMessage());
+            } finally {
+                close(out);
+            }
+        }
+    }
+
+    private static byte[] serialize(Map<String, SegmentedHistogram> opponentTables) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(opponentTables.size());
+        for (Map.Entry<String, SegmentedHistogram> table : opponentTables.entrySet()) {
+            out.writeUTF(table.getKey());
+            table.getValue().write(out);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static String fileName(String opponent) {
+        return opponent.replaceAll("[^A-Za-z0-9._-]", "_") + SUFFIX;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
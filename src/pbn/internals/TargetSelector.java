@@ -0,0 +1,269 @@
+package pbn.internals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Keeps the known enemies in flat arrays and ranks them for target selection.
+ * <p/>
+ * Entries are updated in place on scans and removed on deaths. Positions, distances and scores are computed at most
+ * once per tick in {@link #refresh(long, double, double)}, after which every ranked query is a single linear pass.
+ * Ties are broken by name, so the order is total and stable between ticks. An optional {@link SpatialGrid} is
+ * rebuilt from the predicted positions on every refresh, before scoring, with the selector indices as ids.
+ */
+public class TargetSelector<T extends Predictable> {
+
+    /**
+     * Scores a target - higher is better. Called once per target per refresh, after all positions are known.
+     */
+    public interface Scorer<T extends Predictable> {
+        double score(TargetSelector<T> selector, int index);
+    }
+
+    private final Scorer<T> scorer;
+    private final SpatialGrid grid;
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    private String[] names = new String[8];
+    private Object[] entries = new Object[8];
+    private double[] energy = new double[8];
+    private double[] x = new double[8];
+    private double[] y = new double[8];
+    private double[] distance = new double[8];
+    private double[] score = new double[8];
+    private int size;
+
+    private long refreshTime = -1;
+    private boolean dirty;
+
+    public TargetSelector(Scorer<T> scorer) {
+        this(scorer, null);
+    }
+
+    public TargetSelector(Scorer<T> scorer, SpatialGrid grid) {
+        this.scorer = scorer;
+        this.grid = grid;
+    }
+
+    /**
+     * Insert or replace the entry for a robot
+     */
+    public void update(String name, T entry, double entryEnergy) {
+        Integer index = indices.get(name);
+        int i;
+        if (index == null) {
+            if (size == names.length) {
+                grow();
+            }
+            i = size++;
+            names[i] = name;
+            indices.put(name, i);
+        } else {
+            i = index;
+        }
+        entries[i] = entry;
+        energy[i] = entryEnergy;
+        dirty = true;
+    }
+
+    /**
+     * Remove a robot, e.g. when it dies
+     */
+    public void remove(String name) {
+        Integer index = indices.remove(name);
+        if (index == null) {
+            return;
+        }
+        int i = index;
+        int last = --size;
+        if (i != last) {
+            names[i] = names[last];
+            entries[i] = entries[last];
+            energy[i] = energy[last];
+            x[i] = x[last];
+            y[i] = y[last];
+            distance[i] = distance[last];
+            score[i] = score[last];
+            indices.put(names[i], i);
+        }
+        names[last] = null;
+        entries[last] = null;
+        dirty = true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            names[i] = null;
+            entries[i] = null;
+        }
+        indices.clear();
+        size = 0;
+        dirty = true;
+    }
+
+    /**
+     * Predict every target at the given time and score it. Does nothing if already done for this tick and no entry
+     * changed since.
+     *
+     * @param time  the current time
+     * @param fromX our x coordinate
+     * @param fromY our y coordinate
+     */
+    public void refresh(long time, double fromX, double fromY) {
+        if (time == refreshTime && !dirty) {
+            return;
+        }
+        refreshTime = time;
+        dirty = false;
+        for (int i = 0; i < size; i++) {
+            T entry = get(i);
+            double px = entry.x(time);
+            double py = entry.y(time);
+            double dX = px - fromX;
+            double dY = py - fromY;
+            x[i] = px;
+            y[i] = py;
+            distance[i] = sqrt(dX * dX + dY * dY);
+        }
+        if (grid != null) {
+            grid.clear();
+            for (int i = 0; i < size; i++) {
+                grid.add(i, x[i], y[i]);
+            }
+            grid.build();
+        }
+        for (int i = 0; i < size; i++) {
+            score[i] = scorer.score(this, i);
+        }
+    }
+
+    /**
+     * @return the target with the highest score, or null if there are none
+     */
+    public T best() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best < 0 || score[i] > score[best] || (score[i] == score[best] && names[i].compareTo(names[best]) < 0)) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : get(best);
+    }
+
+    /**
+     * @return the closest target, or null if there are none
+     */
+    public T closest() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best < 0 || distance[i] < distance[best] || (distance[i] == distance[best] && names[i].compareTo(names[best]) < 0)) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : get(best);
+    }
+
+    /**
+     * @return the target with the least energy, or null if there are none
+     */
+    public T weakest() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best < 0 || energy[i] < energy[best] || (energy[i] == energy[best] && names[i].compareTo(names[best]) < 0)) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : get(best);
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        String[] newNames = new String[capacity];
+        Object[] newEntries = new Object[capacity];
+        System.arraycopy(names, 0, newNames, 0, size);
+        System.arraycopy(entries, 0, newEntries, 0, size);
+        names = newNames;
+        entries = newEntries;
+        energy = copyOf(energy, capacity);
+        x = copyOf(x, capacity);
+        y = copyOf(y, capacity);
+        distance = copyOf(distance, capacity);
+        score = copyOf(score, capacity);
+    }
+
+    private double[] copyOf(double[] array, int capacity) {
+        double[] copy = new double[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the grid over the positions at the last refresh, or null if there is none
+     */
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return index of the named robot, or -1 if unknown
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int i) {
+        return (T) entries[i];
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public double getEnergy(int i) {
+        return energy[i];
+    }
+
+    /**
+     * Predicted x coordinate at the last refresh
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Predicted y coordinate at the last refresh
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Predicted distance at the last refresh
+     */
+    public double getDistance(int i) {
+        return distance[i];
+    }
+
+    /**
+     * Score at the last refresh
+     */
+    public double getScore(int i) {
+        return score[i];
+    }
+
+    /**
+     * Score of the named robot at the last refresh, or 0 if unknown
+     */
+    public double getScore(String name) {
+        int i = indexOf(name);
+        return i < 0 ? 0 : score[i];
+    }
+}
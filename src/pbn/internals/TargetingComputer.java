@@ -18,9 +18,11 @@ import static robocode.util.Utils.normalAbsoluteAngle;
 public class TargetingComputer {
 
     private final AdvancedRobot robot;
+    private final InterceptSolver interceptSolver;
 
     public TargetingComputer(AdvancedRobot robot) {
         this.robot = robot;
+        this.interceptSolver = new InterceptSolver(robot.getBattleFieldWidth(), robot.getBattleFieldHeight(), robot.getWidth() / 4);
     }
 
     /**
@@ -29,60 +31,52 @@ public class TargetingComputer {
      * @param track       Track to aim at
      * @param firingPoint Point from where the shot will be fired
      * @param firingTime  Absolute time of shot
-     * @return Absolute bearing of shot (radians)
-     * @throws NoSolutionException if not solution was found
+     * @return Absolute bearing of shot (radians), or null if no solution was found
      */
     public ShootingSolution getShootingSolution(
             Track track,
             final Point2D firingPoint,
-            final long firingTime) throws NoSolutionException {
+            final long firingTime) {
         final Recording target = track.top();
         double power = min(max(target.energy, 0.1), min(1.5, robot.getEnergy() / 2));
         Point2D targetPos = getTargetPos(firingPoint, firingTime, power, target);
+        if (targetPos == null) {
+            return null;
+        }
         double distance = firingPoint.distance(targetPos);
-        if (distance > 400 && power > 1) {
-            power = 1;
-            targetPos = getTargetPos(firingPoint, firingTime, power, target);
-            distance = firingPoint.distance(targetPos);
-        } else if (distance < 200 && robot.getEnergy() > 20) {
-            power = 3;
+        double adjusted = getBulletPower(target, distance);
+        if (adjusted != power) {
+            power = adjusted;
             targetPos = getTargetPos(firingPoint, firingTime, power, target);
-            distance = firingPoint.distance(targetPos);
         }
+        if (targetPos == null) {
+            return null;
+        }
+        distance = firingPoint.distance(targetPos);
         DebugGraphics.drawAimLine(robot.getGraphics(), firingPoint, targetPos);
         double absoluteBearing = getAbsoluteBearing(firingPoint, targetPos);
         return new ShootingSolution(firingPoint, firingTime, targetPos, distance, absoluteBearing, power, target.name);
     }
 
-    private Point2D getTargetPos(Point2D firingPoint, long firingTime, double power, Recording top) throws NoSolutionException {
-        Point2D targetPos = top.advance(firingTime);
-        double remainingDistance = targetPos.distance(firingPoint);
-        long dt = 0;
-        while (remainingDistance > (robot.getWidth() / 2) ) {
-            dt++; //one step closer
-            Point2D advance = top.advance(firingTime + dt);
-            if (outsideBattleField(advance)) {
-                robot.out.println("Lead is outside battlefield, aiming at wall location");
-                break;
-            }
-            targetPos = advance;
-            double bulletDistance = getBulletDistance(dt, power);
-            remainingDistance = targetPos.distance(firingPoint) - bulletDistance;
-            if (bulletDistance > robot.getBattleFieldHeight() + robot.getBattleFieldWidth()) {
-                throw new NoSolutionException("Iteration exceeded limits");
-            }
+    /**
+     * Bullet power for a shot at a target at the given distance: weak shots far away, strong ones up close
+     */
+    public double getBulletPower(Recording target, double distance) {
+        double power = min(max(target.energy, 0.1), min(1.5, robot.getEnergy() / 2));
+        if (distance > 400 && power > 1) {
+            return 1;
+        } else if (distance < 200 && robot.getEnergy() > 20) {
+            return 3;
         }
-        return targetPos;
+        return power;
     }
 
-
-    private boolean outsideBattleField(Point2D targetPos) {
-        int width2 = (int) robot.getWidth() / 4;
-        return targetPos.getX() < width2
-                || targetPos.getX() > robot.getBattleFieldWidth() - width2
-                || targetPos.getY() < width2
-                || targetPos.getY() > robot.getBattleFieldHeight() - width2;
-
+    private Point2D getTargetPos(Point2D firingPoint, long firingTime, double power, Recording top) {
+        if (!interceptSolver.solve(top, top.name, firingPoint.getX(), firingPoint.getY(),
+                firingTime, Rules.getBulletSpeed(power), robot.getWidth() / 2)) {
+            return null;
+        }
+        return new Point2D.Double(interceptSolver.getX(), interceptSolver.getY());
     }
 
 
@@ -95,9 +89,9 @@ public class TargetingComputer {
         double dX = to.getX() - from.getX();
         double angle;
         if (dX > 0) {
-            angle = PI / 2 - Math.atan2(dY, dX);
+            angle = PI / 2 - FastMath.atan2(dY, dX);
         } else if (dX < 0) {
-            angle = PI / 2 - Math.atan2(dY, dX);
+            angle = PI / 2 - FastMath.atan2(dY, dX);
         } else {
             angle = dY > 0 ? 0 : PI;
         }
@@ -105,10 +99,10 @@ public class TargetingComputer {
     }
 
     public static double dx(double angle) {
-        return sin(angle);
+        return FastMath.sin(angle);
     }
 
     public static double dy(double angle) {
-        return cos(angle);
+        return FastMath.cos(angle);
     }
 }
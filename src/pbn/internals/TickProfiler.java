@@ -0,0 +1,171 @@
+package pbn.internals;
+
+import robocode.Robot;
+import robocode.SkippedTurnEvent;
+
+import java.io.PrintStream;
+
+/**
+ * Times named sections of a robot's code per tick, to find out where a tick's time goes.
+ * <p/>
+ * Every section keeps a {@link LatencyHistogram} of its durations, and the time it took in the current and in the
+ * last completed tick. A skipped turn is blamed on the section that took the longest in the last tick the robot
+ * ran, which is the tick that overran. Percentiles are published as debug properties every few ticks, and printed
+ * by {@link #summary(PrintStream)}.
+ * <p/>
+ * Sections may nest, but must not call anything that blocks for the next turn, or they time the wait too.
+ * A disabled profiler costs a field read per call; guard with the {@link #ENABLED} constant to compile it out.
+ */
+public class TickProfiler {
+
+    /**
+     * Set to false to let the compiler drop every measurement
+     */
+    public static final boolean ENABLED = true;
+
+    private static final int MAX_SECTIONS = 16;
+
+    private final Robot robot;
+    private final boolean enabled;
+    private final int propertyInterval;
+
+    private final String[] names = new String[MAX_SECTIONS];
+    private final LatencyHistogram[] histograms = new LatencyHistogram[MAX_SECTIONS];
+    private final long[] started = new long[MAX_SECTIONS];
+    private final long[] currentTick = new long[MAX_SECTIONS];
+    private final long[] lastTick = new long[MAX_SECTIONS];
+    private final long[] skips = new long[MAX_SECTIONS];
+    private int sections;
+
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private long tickTime = -1;
+    private long publishTime;
+    private long skipped;
+    private long unattributed;
+
+    /**
+     * @param robot            robot to profile
+     * @param enabled          false to make every call a no-op
+     * @param propertyInterval number of ticks between two publications of the debug properties
+     */
+    public TickProfiler(Robot robot, boolean enabled, int propertyInterval) {
+        this.robot = robot;
+        this.enabled = enabled;
+        this.propertyInterval = propertyInterval;
+    }
+
+    /**
+     * Register a section
+     *
+     * @return the id to pass to {@link #start(int)} and {@link #stop(int)}
+     */
+    public int section(String name) {
+        if (sections == MAX_SECTIONS) {
+            throw new IllegalStateException("Too many sections");
+        }
+        names[sections] = name;
+        histograms[sections] = new LatencyHistogram();
+        return sections++;
+    }
+
+    public void start(int section) {
+        if (ENABLED && enabled) {
+            roll();
+            started[section] = System.nanoTime();
+        }
+    }
+
+    public void stop(int section) {
+        if (ENABLED && enabled && started[section] != 0) {
+            long nanos = System.nanoTime() - started[section];
+            started[section] = 0;
+            histograms[section].record(nanos);
+            currentTick[section] += nanos;
+        }
+    }
+
+    /**
+     * Close the current tick if time moved on
+     */
+    private void roll() {
+        long time = robot.getTime();
+        if (time == tickTime) {
+            return;
+        }
+        if (tickTime >= 0) {
+            long total = 0;
+            for (int i = 0; i < sections; i++) {
+                lastTick[i] = currentTick[i];
+                total += currentTick[i];
+                currentTick[i] = 0;
+            }
+            ticks.record(total);
+        }
+        tickTime = time;
+        if (time - publishTime >= propertyInterval || time < publishTime) {
+            publishTime = time;
+            publish();
+        }
+    }
+
+    /**
+     * Count a skipped turn against the section that took the longest in the last tick we ran
+     *
+     * @return the name of that section, or null if no section ran in that tick
+     */
+    public String onSkippedTurn(SkippedTurnEvent event) {
+        if (!ENABLED || !enabled) {
+            return null;
+        }
+        roll();
+        skipped++;
+        int worst = -1;
+        for (int i = 0; i < sections; i++) {
+            if (lastTick[i] > 0 && (worst < 0 || lastTick[i] > lastTick[worst])) {
+                worst = i;
+            }
+        }
+        if (worst < 0) {
+            unattributed++;
+            return null;
+        }
+        skips[worst]++;
+        return names[worst];
+    }
+
+    private void publish() {
+        for (int i = 0; i < sections; i++) {
+            robot.setDebugProperty("tick." + names[i], describe(histograms[i]) + " skips=" + skips[i]);
+        }
+        robot.setDebugProperty("tick", describe(ticks) + " skips=" + skipped);
+    }
+
+    private static String describe(LatencyHistogram histogram) {
+        return String.format("p50=%dus p99=%dus max=%dus", histogram.percentile(.5) / 1000,
+                histogram.percentile(.99) / 1000, histogram.getMax() / 1000);
+    }
+
+    /**
+     * Print the latency of every section, and the skipped turns blamed on it
+     */
+    public void summary(PrintStream out) {
+        if (!ENABLED || !enabled) {
+            return;
+        }
+        out.println(String.format("%-24s %8s %9s %9s %9s %9s %6s", "section", "calls", "mean us", "p50 us",
+                "p99 us", "max us", "skips"));
+        for (int i = 0; i < sections; i++) {
+            print(out, names[i], histograms[i], skips[i]);
+        }
+        print(out, "(tick)", ticks, skipped);
+        if (unattributed > 0) {
+            out.println(unattributed + " skipped turns happened outside of any section");
+        }
+    }
+
+    private static void print(PrintStream out, String name, LatencyHistogram histogram, long skips) {
+        out.println(String.format("%-24s %8d %9.1f %9.1f %9.1f %9.1f %6d", name, histogram.getCount(),
+                histogram.getMean() / 1e3, histogram.percentile(.5) / 1e3, histogram.percentile(.99) / 1e3,
+                histogram.getMax() / 1e3, skips));
+    }
+}
@@ -0,0 +1,178 @@
+package pbn.internals;
+
+import robocode.Robot;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a robot's per-tick work in order of priority within a time budget, shedding the less important work when
+ * the tick runs long.
+ * <p/>
+ * Once the time spent in a tick passes the degrade fraction of the budget, tasks below the critical priorities are
+ * run in a cheaper, degraded form; past the defer fraction they are skipped for this tick. Critical tasks always run
+ * in full. Tasks count how often they were degraded and deferred, to help tune the budget.
+ * <p/>
+ * The tick starts at {@link #beginTick()}, which should be called from the first event of the tick
+ * ({@code onStatus}); if it is not called, the tick starts at the first task that runs in it.
+ */
+public class TickScheduler {
+
+    public static final int RADAR = 0;
+    public static final int MOVEMENT = 1;
+    public static final int GUN = 2;
+    public static final int WAVES = 3;
+    public static final int STATISTICS = 4;
+    public static final int RENDERING = 5;
+
+    /**
+     * Tasks up to this priority always run in full
+     */
+    public static final int CRITICAL = MOVEMENT;
+
+    public static final int FULL = 0;
+    public static final int DEGRADED = 1;
+    public static final int DEFERRED = 2;
+
+    /**
+     * A unit of per-tick work. A task can also be {@link #admit admitted} on its own, e.g. for rendering which runs
+     * when the engine calls {@code onPaint}; its {@link #run} is then not used.
+     */
+    public static class Task {
+        private final String name;
+        private final int priority;
+        private boolean registered;
+        private long runs;
+        private long degraded;
+        private long deferred;
+
+        public Task(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        /**
+         * @param degraded true if the tick is running long, and the task should do less
+         */
+        protected void run(boolean degraded) {
+        }
+    }
+
+    private final Robot robot;
+    private final long degradeNanos;
+    private final long deferNanos;
+    private final List<Task> tasks = new ArrayList<Task>();
+    private final List<Task> admitted = new ArrayList<Task>();
+
+    private long tickTime = -1;
+    private long tickStart;
+
+    /**
+     * @param robot           robot to schedule for
+     * @param budgetNanos     time a tick may take
+     * @param degradeFraction fraction of the budget after which tasks are degraded
+     * @param deferFraction   fraction of the budget after which tasks are deferred
+     */
+    public TickScheduler(Robot robot, long budgetNanos, double degradeFraction, double deferFraction) {
+        this.robot = robot;
+        this.degradeNanos = (long) (budgetNanos * degradeFraction);
+        this.deferNanos = (long) (budgetNanos * deferFraction);
+    }
+
+    /**
+     * Register a task for {@link #runTasks()}, after the registered tasks of the same or a higher priority
+     */
+    public void add(Task task) {
+        int i = tasks.size();
+        while (i > 0 && tasks.get(i - 1).priority > task.priority) {
+            i--;
+        }
+        tasks.add(i, task);
+        task.registered = true;
+    }
+
+    /**
+     * Start timing a new tick
+     */
+    public void beginTick() {
+        tickTime = robot.getTime();
+        tickStart = System.nanoTime();
+    }
+
+    /**
+     * Time left in this tick before tasks get degraded, e.g. for an {@link AnytimeJob} to use
+     */
+    public long remainingNanos() {
+        if (robot.getTime() != tickTime) {
+            return degradeNanos;
+        }
+        return Math.max(0, degradeNanos - (System.nanoTime() - tickStart));
+    }
+
+    /**
+     * Run every registered task in order of priority, each in the mode the time left allows
+     */
+    public void runTasks() {
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            int mode = admit(task);
+            if (mode != DEFERRED) {
+                task.run(mode == DEGRADED);
+            }
+        }
+    }
+
+    /**
+     * Decide how a task may run now, and count it
+     *
+     * @return {@link #FULL}, {@link #DEGRADED} or {@link #DEFERRED}
+     */
+    public int admit(Task task) {
+        if (!task.registered) {
+            admitted.add(task);
+            task.registered = true;
+        }
+        long now = System.nanoTime();
+        long time = robot.getTime();
+        if (time != tickTime) {
+            tickTime = time;
+            tickStart = now;
+        }
+        long elapsed = now - tickStart;
+        int mode = FULL;
+        if (task.priority > CRITICAL) {
+            if (elapsed >= deferNanos) {
+                mode = DEFERRED;
+            } else if (elapsed >= degradeNanos) {
+                mode = DEGRADED;
+            }
+        }
+        if (mode == DEFERRED) {
+            task.deferred++;
+        } else {
+            task.runs++;
+            if (mode == DEGRADED) {
+                task.degraded++;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Print how often every task ran, was degraded and was deferred
+     */
+    public void summary(PrintStream out) {
+        out.println(String.format("%-16s %8s %8s %8s", "task", "runs", "degraded", "deferred"));
+        for (Task task : tasks) {
+            print(out, task);
+        }
+        for (Task task : admitted) {
+            print(out, task);
+        }
+    }
+
+    private static void print(PrintStream out, Task task) {
+        out.println(String.format("%-16s %8d %8d %8d", task.name, task.runs, task.degraded, task.deferred));
+    }
+}
@@ -1,40 +1,224 @@
 package pbn.internals;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
-import java.util.List;
-
 /**
- * A track of a single robot
+ * A track of a single robot: its latest {@link Recording}, and a history of its scans in a ring buffer.
+ * <p/>
+ * The history is kept in columns of primitives, one array per field, so a long history costs a few bytes per tick
+ * and no objects. It holds one entry per tick: gaps between scans of up to {@value #MAX_GAP} ticks are filled in
+ * from the scans on both sides, and longer gaps, or the start of a new round, leave a break in the history. Read it
+ * with a {@link Cursor}, which walks from the newest scan back to the last break without copying or locking, or
+ * index it in place with a {@link PatternMatcher}.
+ * <p/>
+ * There must be a single writer. One slot more than the capacity is allocated, so the slot the writer fills next
+ * is never visible to readers, and a reader on another thread stops before the entries it may be overwriting.
  */
 public class Track {
-    private Deque<Recording> elements;
-    private static final int limit = 10;
+
+    /**
+     * Ticks of history kept by default, a few rounds for the {@link PatternGun} to match against
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Longest gap between scans, in ticks, that is filled in rather than breaking the history
+     */
+    public static final int MAX_GAP = 8;
+
+    /**
+     * Time of the entry that marks a break
+     */
+    static final long BREAK = Long.MIN_VALUE;
+
+    final int capacity;
+    final int slots;
+    final long[] time;
+    final double[] x;
+    final double[] y;
+    final double[] heading;
+    final double[] velocity;
+    final double[] turnRate;
+    final double[] energy;
+
+    /**
+     * Number of entries ever written; the newest is at (written - 1) % slots
+     */
+    volatile long written;
+    private volatile Recording top;
 
     public Track() {
-        elements = new ArrayDeque<Recording>(limit);
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of ticks kept; older ones are overwritten
+     */
+    public Track(int capacity) {
+        this.capacity = capacity;
+        this.slots = capacity + 1;
+        time = new long[slots];
+        x = new double[slots];
+        y = new double[slots];
+        heading = new double[slots];
+        velocity = new double[slots];
+        turnRate = new double[slots];
+        energy = new double[slots];
+    }
+
+    /**
+     * Add a scan, filling in the ticks since the previous one, or breaking the history if it is too far back
+     */
+    public void add(Recording element) {
+        Recording previous = top;
+        if (previous != null) {
+            long gap = element.time - previous.time;
+            if (gap <= 0 || gap > MAX_GAP) {
+                append(BREAK, 0, 0, 0, 0, 0, 0);
+            } else {
+                double x0 = previous.position.getX();
+                double y0 = previous.position.getY();
+                double dx = element.position.getX() - x0;
+                double dy = element.position.getY() - y0;
+                for (long t = 1; t < gap; t++) {
+                    double f = (double) t / gap;
+                    append(previous.time + t, x0 + f * dx, y0 + f * dy, previous.headingRadians + t * element.turnRate,
+                            element.velocity, element.turnRate, element.energy);
+                }
+            }
+        }
+        append(element.time, element.position.getX(), element.position.getY(), element.headingRadians,
+                element.velocity, element.turnRate, element.energy);
+        top = element;
     }
 
-    public synchronized void add(Recording element) {
-        if (elements.size() >= limit) {
-            elements.pollLast();
+    /**
+     * Break the history, e.g. at the start of a new round, so the next scan does not continue it
+     */
+    public void breakHistory() {
+        if (top != null) {
+            append(BREAK, 0, 0, 0, 0, 0, 0);
+            top = null;
         }
-        elements.push(element);
     }
 
+    private void append(long t, double x, double y, double heading, double velocity, double turnRate, double energy) {
+        long sequence = written;
+        int i = slot(sequence);
+        this.time[i] = t;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.heading[i] = heading;
+        this.velocity[i] = velocity;
+        this.turnRate[i] = turnRate;
+        this.energy[i] = energy;
+        written = sequence + 1;
+    }
+
+    /**
+     * @return the slot of the entry with the given sequence number, valid while it is among the newest
+     * {@link #capacity()} entries
+     */
+    int slot(long sequence) {
+        return (int) (sequence % slots);
+    }
+
+    /**
+     * @return the latest recording, or null if there is none since the last break
+     */
     public Recording top() {
-        return elements.peekFirst();
+        return top;
     }
 
-    public synchronized List<Recording> snapshot() {
-        return new ArrayList<Recording>(elements);
+    /**
+     * @return number of entries in the history, filled-in ticks and breaks included
+     */
+    public int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Walks the history of a track from the newest scan back to the oldest, or to the last break before it. A cursor
+     * can be reused for any number of walks over any track, so a reader needs to allocate it only once.
+     * <pre>
+     * for (cursor.reset(track); cursor.next(); ) {
+     *     ... cursor.x() ...
+     * }
+     * </pre>
+     */
+    public static class Cursor {
+        private Track track;
+        private long newest;
+        private long sequence;
+        private int index;
+
+        /**
+         * Position the cursor before the newest scan of a track
+         */
+        public Cursor reset(Track track) {
+            this.track = track;
+            this.newest = track.written - 1;
+            this.sequence = newest + 1;
+            return this;
+        }
+
+        /**
+         * Move to the next older scan
+         *
+         * @return false if there is none, if it may already have been overwritten, or at a break
+         */
+        public boolean next() {
+            sequence--;
+            if (sequence < 0 || track.written - sequence > track.capacity) {
+                return false;
+            }
+            index = track.slot(sequence);
+            return track.time[index] != BREAK;
+        }
+
+        /**
+         * @return number of ticks since the newest scan
+         */
+        public int age() {
+            return (int) (newest - sequence);
+        }
+
+        public long time() {
+            return track.time[index];
+        }
+
+        public double x() {
+            return track.x[index];
+        }
+
+        public double y() {
+            return track.y[index];
+        }
+
+        public double heading() {
+            return track.heading[index];
+        }
+
+        public double velocity() {
+            return track.velocity[index];
+        }
+
+        public double turnRate() {
+            return track.turnRate[index];
+        }
+
+        public double energy() {
+            return track.energy[index];
+        }
     }
 
     @Override
     public String toString() {
         return "Track{" +
-                "elements=" + elements +
+                "top=" + top +
+                ", size=" + size() +
                 '}';
     }
 }
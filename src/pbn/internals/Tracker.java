@@ -3,70 +3,81 @@ package pbn.internals;
 import robocode.AdvancedRobot;
 import robocode.RobotDeathEvent;
 import robocode.ScannedRobotEvent;
-import robocode.util.Utils;
+import robocode.annotation.SafeStatic;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import static java.lang.Math.signum;
-import static pbn.internals.TargetingComputer.getAbsoluteBearing;
-import static robocode.util.Utils.normalRelativeAngle;
-
 /**
- * Utility subsystem to keep track of enemy robots
+ * Utility subsystem to keep track of enemy robots. Only used from the robot thread, so it takes no locks.
+ * <p/>
+ * The tracks are kept across rounds, for their histories to span several rounds, with a break at the start of each.
  */
 public class Tracker {
+    @SafeStatic
+    private static final Map<String, Track> histories = new HashMap<String, Track>();
+
     private final Map<String, Track> buffer;
     private final AdvancedRobot robot;
+    private final TargetSelector<Recording> selector;
 
     public Tracker(AdvancedRobot robot) {
         this.robot = robot;
         buffer = new HashMap<String, Track>();
+        selector = new TargetSelector<Recording>(new TargetSelector.Scorer<Recording>() {
+            @Override
+            public double score(TargetSelector<Recording> selector, int index) {
+                return -selector.getDistance(index);
+            }
+        });
+        for (Track track : histories.values()) {
+            track.breakHistory();
+        }
     }
 
-    public synchronized boolean hasEnemies() {
+    public boolean hasEnemies() {
         return !buffer.isEmpty();
     }
 
-    public synchronized void update(ScannedRobotEvent e) {
+    /**
+     * @return the recording of the scan
+     */
+    public Recording update(ScannedRobotEvent e) {
         Track track = buffer.get(e.getName());
         robot.setInterruptible(true);
         if (track == null) {
-            track = new Track();
+            track = histories.get(e.getName());
+            if (track == null) {
+                track = new Track();
+                histories.put(e.getName(), track);
+            }
             buffer.put(e.getName(), track);
         }
 
         Recording target = Recording.record(robot, e, track.top());
         track.add(target);
-        Point2D robotPos = new Point2D.Double(robot.getX(), robot.getY());
-
-        if (robot.getOthers() == 1) {
-            Point2D advance = target.advance(robot.getTime() + 1);
-            double d = normalRelativeAngle(
-                    getAbsoluteBearing(robotPos, advance) - robot.getRadarHeadingRadians());
-            if (d != 0) {
-                robot.setTurnRadarRightRadians(d);
-            }
-
-        }
+        selector.update(target.name, target, target.energy);
+        return target;
     }
 
-    public synchronized void update(RobotDeathEvent event) {
+    public void update(RobotDeathEvent event) {
         buffer.remove(event.getName());
+        selector.remove(event.getName());
     }
 
-    public synchronized Track getClosestRobotTrack() {
-        Track closest = null;
-        for (Track track : buffer.values()) {
-            Recording top = track.top();
-            if (closest == null || closest.top().distance(robot) > top.distance(robot)) {
-                closest = track;
-            }
-        }
-        return closest;
+    /**
+     * @return the track of a robot alive and scanned this round, or null
+     */
+    public Track getTrack(String name) {
+        return buffer.get(name);
+    }
+
+    public Track getClosestRobotTrack() {
+        selector.refresh(robot.getTime(), robot.getX(), robot.getY());
+        Recording closest = selector.closest();
+        return closest == null ? null : buffer.get(closest.name);
     }
 
     public void paint(Graphics2D g) {
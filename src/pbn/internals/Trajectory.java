@@ -0,0 +1,119 @@
+package pbn.internals;
+
+import robocode.Rules;
+
+import static java.lang.Math.*;
+
+/**
+ * Precomputed positions of a robot for a number of ticks after a scan, assuming constant velocity and turn rate.
+ * <p/>
+ * The table is filled once per scan, after which a prediction for a time inside the horizon is an array lookup.
+ * Times beyond the horizon fall back to {@link Prediction}.
+ */
+public class Trajectory implements Predictable {
+
+    private final double[] x;
+    private final double[] y;
+    private long startTime;
+    private int length;
+
+    private double heading, turnRate, velocity;
+
+    public Trajectory(int horizon) {
+        x = new double[horizon + 1];
+        y = new double[horizon + 1];
+    }
+
+    /**
+     * Number of ticks a bullet of the lowest speed needs to cross the diagonal of the battlefield
+     */
+    public static int horizon(double battleFieldWidth, double battleFieldHeight) {
+        double diagonal = sqrt(battleFieldWidth * battleFieldWidth + battleFieldHeight * battleFieldHeight);
+        return (int) ceil(diagonal / Rules.getBulletSpeed(Rules.MAX_BULLET_POWER));
+    }
+
+    /**
+     * Reuse the given trajectory if it is large enough, otherwise create a new one
+     */
+    public static Trajectory reuse(Trajectory trajectory, int horizon) {
+        if (trajectory != null && trajectory.capacity() >= horizon) {
+            return trajectory;
+        }
+        return new Trajectory(horizon);
+    }
+
+    /**
+     * Recompute the table from a new observation
+     *
+     * @param time     time of the observation
+     * @param startX   x coordinate at that time
+     * @param startY   y coordinate at that time
+     * @param heading  heading at that time, in radians
+     * @param turnRate turn rate in radians per tick
+     * @param velocity velocity
+     */
+    public void fill(long time, double startX, double startY, double heading, double turnRate, double velocity) {
+        this.startTime = time;
+        this.heading = heading;
+        this.turnRate = turnRate;
+        this.velocity = velocity;
+        // rotate the step vector by the turn rate each tick, instead of calling sin/cos per tick
+        double sinH = sin(heading);
+        double cosH = cos(heading);
+        double sinW = sin(turnRate);
+        double cosW = cos(turnRate);
+        double px = startX;
+        double py = startY;
+        x[0] = px;
+        y[0] = py;
+        for (int t = 1; t < x.length; t++) {
+            px += velocity * sinH;
+            py += velocity * cosH;
+            x[t] = px;
+            y[t] = py;
+            double s = sinH * cosW + cosH * sinW;
+            cosH = cosH * cosW - sinH * sinW;
+            sinH = s;
+        }
+        length = x.length;
+    }
+
+    @Override
+    public double x(long time) {
+        long offset = time - startTime;
+        if (offset < 0) {
+            return x[0];
+        }
+        if (offset < length) {
+            return x[(int) offset];
+        }
+        return x[0] + Prediction.dx(heading, turnRate, velocity, offset);
+    }
+
+    @Override
+    public double y(long time) {
+        long offset = time - startTime;
+        if (offset < 0) {
+            return y[0];
+        }
+        if (offset < length) {
+            return y[(int) offset];
+        }
+        return y[0] + Prediction.dy(heading, turnRate, velocity, offset);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return number of ticks covered by the table, including the observation itself
+     */
+    public int length() {
+        return length;
+    }
+
+    public int capacity() {
+        return x.length;
+    }
+}
@@ -0,0 +1,82 @@
+package pbn.pinkpanther;
+
+import pbn.internals.FastMath;
+import pbn.internals.SegmentedHistogram;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * A bullet an enemy is assumed to have fired at us, as a wave spreading from where it was fired. Waves are reused by
+ * the {@link WaveSurfer}, so all state is set through {@link #set} rather than the constructor.
+ */
+class EnemyWave {
+    double originX, originY;
+    long fireTime;
+    double speed;
+    /**
+     * Bearing from the origin to us when the wave was fired
+     */
+    double directAngle;
+    /**
+     * Our lateral direction relative to the origin when the wave was fired
+     */
+    int direction;
+    String shooter;
+    SegmentedHistogram dangers;
+    int segment;
+
+    void set(double originX, double originY, long fireTime, double speed, double directAngle, int direction,
+             String shooter, SegmentedHistogram dangers, int segment) {
+        this.originX = originX;
+        this.originY = originY;
+        this.fireTime = fireTime;
+        this.speed = speed;
+        this.directAngle = directAngle;
+        this.direction = direction;
+        this.shooter = shooter;
+        this.dangers = dangers;
+        this.segment = segment;
+    }
+
+    /**
+     * @return distance the wave has travelled at the given time
+     */
+    double radius(long time) {
+        return (time - fireTime) * speed;
+    }
+
+    /**
+     * @return true if the wave has reached the given point at the given time
+     */
+    boolean reached(double x, double y, long time) {
+        double radius = radius(time);
+        double dx = x - originX;
+        double dy = y - originY;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * @return the guess factor of the given point, as seen from the origin
+     */
+    double guessFactor(double x, double y) {
+        double bearing = FastMath.atan2(x - originX, y - originY);
+        double offset = normalRelativeAngle(bearing - directAngle);
+        return max(-1, min(1, offset / FastMath.escapeAngleForSpeed(speed))) * direction;
+    }
+
+    /**
+     * @return the danger of being hit at the given point, from the hits seen before
+     */
+    double danger(double x, double y) {
+        int bin = dangers.bin(guessFactor(x, y));
+        double danger = dangers.get(segment, bin);
+        if (bin > 0) {
+            danger += dangers.get(segment, bin - 1) / 2;
+        }
+        if (bin < dangers.bins() - 1) {
+            danger += dangers.get(segment, bin + 1) / 2;
+        }
+        return danger;
+    }
+}
@@ -1,5 +1,14 @@
 package pbn.pinkpanther;
 
+import pbn.internals.EnergyLedger;
+import pbn.internals.FastMath;
+import pbn.internals.ForceField;
+import pbn.internals.GunHeatTracker;
+import pbn.internals.InterceptSolver;
+import pbn.internals.Radar;
+import pbn.internals.SpatialGrid;
+import pbn.internals.TargetSelector;
+import pbn.internals.TickProfiler;
 import robocode.*;
 
 import java.awt.*;
@@ -14,39 +23,75 @@ import static robocode.util.Utils.normalAbsoluteAngle;
 import static robocode.util.Utils.normalRelativeAngle;
 
 /**
- * An anti-gravity bot
+ * An anti-gravity bot, that surfs the waves of the shots fired at it
  */
 public class PinkPanther extends AdvancedRobot {
 
     public static final double PI2 = PI / 2;
+    static final boolean FAST_MATH = true;
+    static final boolean PROFILE = false;
 
     static Map<String, Recording> tracks;
-    static Set<Bullet> bullets;
+    static WaveSurfer surfer;
+    static GunHeatTracker gunHeat;
+    static EnergyLedger ledger;
     static int bfX, bfY, bfX2, bfY2;
-    static String lookingFor;
+    static Radar radar;
     static volatile String target;
+    static InterceptSolver interceptSolver;
+    static ForceField forceField;
+    static TargetSelector<Recording> targets;
+    private TickProfiler profiler;
+    private int navigateSection, gunSection, scanSection, paintSection;
 
     @Override
     public void run() {
+        initialize();
+        //noinspection InfiniteLoopStatement
+        do {
+            profiler.start(navigateSection);
+            navigate();
+            profiler.stop(navigateSection);
+            profiler.start(gunSection);
+            gun();
+            profiler.stop(gunSection);
+            radar.sweep();
+            execute();
+        } while (true);
+    }
+
+    /**
+     * Set up the state for a new round
+     */
+    void initialize() {
         setColors(Color.PINK, Color.PINK, Color.PINK, Color.PINK, Color.PINK);
+        profiler = new TickProfiler(this, PROFILE, 10);
+        navigateSection = profiler.section("navigate");
+        gunSection = profiler.section("gun");
+        scanSection = profiler.section("onScannedRobot");
+        paintSection = profiler.section("onPaint");
         tracks = new HashMap<String, Recording>(getOthers());
-        bullets = new HashSet<Bullet>();
+        surfer = new WaveSurfer(this);
+        gunHeat = new GunHeatTracker(getGunCoolingRate());
+        ledger = new EnergyLedger(gunHeat, getBattleFieldWidth(), getBattleFieldHeight());
+        radar = new Radar(this, gunHeat);
         bfX = (int) getBattleFieldWidth();
         bfY = (int) getBattleFieldHeight();
         bfX2 = bfX / 2;
         bfY2 = bfY / 2;
+        interceptSolver = new InterceptSolver(bfX, bfY, 0);
+        forceField = new ForceField(16);
+        targets = new TargetSelector<Recording>(new TargetSelector.Scorer<Recording>() {
+            @Override
+            public double score(TargetSelector<Recording> selector, int index) {
+                return targetScore(selector, index);
+            }
+        }, new SpatialGrid(bfX, bfY, 200));
         setAdjustRadarForGunTurn(true);
         setAdjustRadarForRobotTurn(true);
         setAdjustGunForRobotTurn(true);
         Recording.robot = this;
-
-        setTurnRadarRightRadians(Double.POSITIVE_INFINITY);
-        //noinspection InfiniteLoopStatement
-        do {
-            navigate();
-            gun();
-            execute();
-        } while (true);
+        FastMath.setFast(FAST_MATH);
     }
 
     private void gun() {
@@ -55,14 +100,15 @@ public class PinkPanther extends AdvancedRobot {
 
         long firingTime = getTime() + gunCoolTime + 1;
         try {
-            newTarget = new TreeSet<Recording>(tracks.values()).iterator().next();
+            targets.refresh(getTime(), getX(), getY());
+            newTarget = targets.best();
             if (newTarget != null) {
                 if (target == null || getGunHeat() > 0.7) {
                     target = newTarget.name;
                 }
                 if (!newTarget.name.equals(target)) {
                     double[] solution = computeSolution(firingTime, newTarget);
-                    if (abs(solution[1]) / toRadians(20) < gunCoolTime - 1) {
+                    if (solution != null && abs(solution[1]) / toRadians(20) < gunCoolTime - 1) {
                         target = newTarget.name;
                     }
                 }
@@ -71,12 +117,16 @@ public class PinkPanther extends AdvancedRobot {
                 try {
                     Recording targetRecord = tracks.get(target);
                     double[] solution = computeSolution(firingTime, targetRecord);
+                    if (solution == null) {
+                        return;
+                    }
                     if (gunCoolTime == 0 && getGunTurnRemaining() < 2) {
-                        setFire(solution[0]);
+                        if (lineOfFireClear(targetRecord.name)) {
+                            setFire(solution[0]);
+                        }
                     } else if (gunCoolTime > 1) { //lock target when we have a single turn left.
                         setTurnGunRightRadians(solution[1]);
                     }
-                } catch (IndexOutOfBoundsException ignored) {
                 } catch (NullPointerException npe) {
                     target = null;
                 }
@@ -85,16 +135,40 @@ public class PinkPanther extends AdvancedRobot {
         }
     }
 
+    /**
+     * A score function - for target selection
+     */
+    private double targetScore(TargetSelector<Recording> selector, int index) {
+        int closeBots = selector.getGrid().countWithin(selector.getX(index), selector.getY(index), 200);
+        return (int) max(0, (73. * (1200 - selector.getDistance(index))) / 1200
+                + (15. * (100 - selector.getEnergy(index))) / 100
+                + (20. * closeBots) / getOthers()
+                + 2 * (selector.getName(index).equals(target) ? 1 : 0)
+        );
+    }
+
+    /**
+     * Checks that no other robot is in the way of a shot along the current gun heading
+     */
+    private boolean lineOfFireClear(String targetName) {
+        int target = targets.indexOf(targetName);
+        if (target < 0) {
+            return true;
+        }
+        int hit = targets.getGrid().firstHit(getX(), getY(), getGunHeadingRadians(), targets.getDistance(target), -1);
+        return hit < 0 || hit == target;
+    }
+
     /**
      * Returns (power, gunTurn)
      *
      * @param firingTime   Time of shot
      * @param targetRecord Target of shot
-     * @return Array with (power, gunTurn)
+     * @return Array with (power, gunTurn), or null if the target cannot be reached
      */
-    private double[] computeSolution(long firingTime, Recording targetRecord) {
+    double[] computeSolution(long firingTime, Recording targetRecord) {
         double power = min(
-                (3. * targetRecord.score()) / 100,
+                (3. * targets.getScore(targetRecord.name)) / 100,
                 min(
                         min(
                                 3,
@@ -102,22 +176,10 @@ public class PinkPanther extends AdvancedRobot {
                         0.1 + (targetRecord.energy > 4 ? (targetRecord.energy + 2) / 6 : targetRecord.energy / 4)));
 
         //calculate target position
-        Point2D targetPos = targetRecord.advance(firingTime);
-        double remainingDistance = targetPos.distance(currentPosition());
-        int dt = 0;
-        while (remainingDistance > (getWidth() / 2)) {
-            dt++; //one step closer
-            Point2D advance = targetRecord.advance(firingTime + dt);
-            if (outsideBF(advance)) {
-                break;
-            }
-            targetPos = advance;
-            double bulletDistance = getBulletSpeed(power) * dt;
-            remainingDistance = targetPos.distance(currentPosition()) - bulletDistance;
-            if (bulletDistance > Point2D.distance(0, 0, bfX, bfY)) { //passed diagonal of battlefield
-                throw new IndexOutOfBoundsException();
-            }
+        if (!interceptSolver.solve(targetRecord, targetRecord.name, getX(), getY(), firingTime, getBulletSpeed(power), getWidth() / 2)) {
+            return null;
         }
+        Point2D targetPos = new Point2D.Double(interceptSolver.getX(), interceptSolver.getY());
         //got target position
         return new double[]{power,
                 normalRelativeAngle(getAbsoluteBearing(currentPosition(), targetPos) - getGunHeadingRadians()) //gun turn
@@ -125,12 +187,16 @@ public class PinkPanther extends AdvancedRobot {
     }
 
 
+    /**
+     * Surf the nearest enemy waves; with none in the air, move with the force field
+     */
     private void navigate() {
-        Map<Point2D, Double> forcePoints = getForcePoints();
-        double[] totalVector = getTotalVector(forcePoints);
-        Point2D destination = new Point2D.Double(getX() + totalVector[0], getY() + totalVector[1]);
-
-        double targetBearing = getAbsoluteBearing(currentPosition(), destination);
+        if (surfer.surf()) {
+            return;
+        }
+        setMaxVelocity(Rules.MAX_VELOCITY);
+        updateForceField();
+        double targetBearing = normalAbsoluteAngle(FastMath.atan2(forceField.getTotalX(), forceField.getTotalY()));
         double turn = normalRelativeAngle(targetBearing - getHeadingRadians());
         double ahead = 16;
         if (abs(turn) > PI2) {
@@ -143,47 +209,27 @@ public class PinkPanther extends AdvancedRobot {
         }
     }
 
-    private double[] getTotalVector(Map<Point2D, Double> forcePoints) {
-        double[] totalVector = new double[2];
-        for (Map.Entry<Point2D, Double> forcePoint : forcePoints.entrySet()) {
-            double[] vector = forceVector(forcePoint.getKey(), forcePoint.getValue());
-            totalVector[0] += vector[0];
-            totalVector[1] += vector[1];
-        }
-        return totalVector;
-    }
-
-    private Map<Point2D, Double> getForcePoints() {
-        Map<Point2D, Double> points = new HashMap<Point2D, Double>();
-        double fixedPointValue = max(2, getOthers() / 2 + bullets.size() /2);
-
-        points.put(new Point2D.Double(bfX2, bfY2), 4.); //center
-        points.put(new Point2D.Double(getX(), getY() < bfY2 ? 0 : bfY), fixedPointValue); //walls
-        points.put(new Point2D.Double(getX() < bfX2 ? 0 : bfX, getY()), fixedPointValue);
+    /**
+     * Fill the force field for this tick, and sum it at our current position
+     */
+    private void updateForceField() {
+        forceField.clear();
+        double fixedPointValue = max(2, getOthers() / 2);
+        double x = getX();
+        double y = getY();
+        long time = getTime();
+
+        forceField.add(bfX2, bfY2, 4.); //center
+        forceField.add(x, y < bfY2 ? 0 : bfY, fixedPointValue); //walls
+        forceField.add(x < bfX2 ? 0 : bfX, y, fixedPointValue);
         for (Recording bot : tracks.values()) {
-            points.put(bot.advance(getTime() + 1), 2 + bot.energy / 10); //bots
+            forceField.add(bot.x(time + 1), bot.y(time + 1), 2 + bot.energy / 10); //bots
         }
-        for (Iterator<Bullet> iterator = bullets.iterator(); iterator.hasNext(); ) {
-            Bullet bullet = iterator.next();
-            Point2D p = advanceBullet(bullet);
-            if (outsideBF(p) || abs(normalRelativeAngle(bullet.heading - getAbsoluteBearing(p, currentPosition()))) > PI2) {
-                iterator.remove();
-            } else {
-                points.put(p, 2. /(abs(bullet.offset) +1));
-            }
-        }
-        return points;
-    }
-
-    private boolean outsideBF(Point2D p) {
-        return p.getX() < 0 || p.getX() > bfX || p.getY() < 0 || p.getY() > bfY;
+        forceField.sum(x, y);
     }
 
-
-    private double[] forceVector(Point2D point, double weight) {
-        double F = (weight) / pow(point.distance(currentPosition()), 2);
-        double bearing = getAbsoluteBearing(point, currentPosition());
-        return new double[]{sin(bearing) * F, cos(bearing) * F};
+    private boolean outsideBF(double x, double y) {
+        return x < 0 || x > bfX || y < 0 || y > bfY;
     }
 
     public Point2D currentPosition() {
@@ -192,40 +238,64 @@ public class PinkPanther extends AdvancedRobot {
 
     @Override
     public void onScannedRobot(ScannedRobotEvent event) {
+        profiler.start(scanSection);
         Recording previous = tracks.get(event.getName());
         Recording record = new Recording(event, previous);
         tracks.put(record.name, record);
-        try {
-            double energyDrop = previous.energy - record.energy;
-            if (record.name.equals(target) && energyDrop > 0 && energyDrop <= 3) { //assume that every shot is in my direction
-                for (int i = -8; i <= 8; i+=2) {// poor mans wave-surfing - ish
-                    bullets.add(new Bullet(previous.time, getBulletSpeed(energyDrop), getAbsoluteBearing(record.position, currentPosition()) + asin(i / getBulletSpeed(energyDrop)), i, record.position));
-                }
-            }
-        } catch (NullPointerException ignored) {
-        }
-        //oldest-seen radar - degenerates to a constant-lock (almost) radar in 1v1
-        if (tracks.size() == getOthers() && (lookingFor == null || record.name.equals(lookingFor))) {
-            Recording oldest = record;
-            for (Recording recording : tracks.values()) {
-                if (oldest.time > recording.time) {
-                    oldest = recording;
-                }
-            }
-            lookingFor = oldest.name;
-            setTurnRadarRightRadians(normalRelativeAngle(getAbsoluteBearing(currentPosition(), oldest.position) - getRadarHeadingRadians()) * Double.POSITIVE_INFINITY);
+        targets.update(record.name, record, record.energy);
+        double firePower = ledger.scanned(record.name, record.time, record.energy,
+                record.position.getX(), record.position.getY(), record.velocity);
+        if (firePower > 0) { //assume that every shot is in my direction
+            surfer.fired(record.name, previous.position.getX(), previous.position.getY(), previous.time, firePower);
         }
+        radar.scanned(record.name, record, record.time);
+        profiler.stop(scanSection);
+    }
+
+    @Override
+    public void onBulletHit(BulletHitEvent event) {
+        ledger.bulletHit(event.getName(), event.getBullet().getPower());
+    }
+
+    @Override
+    public void onHitByBullet(HitByBulletEvent event) {
+        ledger.hitByBullet(event.getBullet().getName(), event.getBullet().getPower());
+        surfer.hit(event.getBullet());
+    }
+
+    @Override
+    public void onHitRobot(HitRobotEvent event) {
+        ledger.hitRobot(event.getName());
+    }
+
+    @Override
+    public void onBulletHitBullet(BulletHitBulletEvent event) {
+        surfer.hit(event.getHitBullet());
+    }
+
+    @Override
+    public void onSkippedTurn(SkippedTurnEvent event) {
+        profiler.onSkippedTurn(event);
     }
 
     @Override
     public void onRobotDeath(RobotDeathEvent event) {
         tracks.remove(event.getName());
-        if (event.getName().equals(lookingFor)) {
-            lookingFor = null;
-        }
+        targets.remove(event.getName());
+        radar.forget(event.getName());
         if (event.getName().equals(target)) {
             target = null;
         }
+        interceptSolver.forget(event.getName());
+        surfer.forget(event.getName());
+        ledger.forget(event.getName());
+        gunHeat.forget(event.getName());
+    }
+
+    @Override
+    public void onRoundEnded(RoundEndedEvent event) {
+        profiler.summary(out);
+        ledger.summary(out);
     }
 
     public static double getAbsoluteBearing(Point2D from, Point2D to) {
@@ -235,20 +305,13 @@ public class PinkPanther extends AdvancedRobot {
         if (dY != 0) {
             //yeah, it is suspicious - because someone inverted the coordinate system with respect to angles
             //noinspection SuspiciousNameCombination
-            angle = Math.atan2(dX, dY);
+            angle = FastMath.atan2(dX, dY);
         } else {
             angle = dX > 0 ? PI2 : 3 * PI2;
         }
         return normalAbsoluteAngle(angle);
     }
 
-    private Point2D advanceBullet(Bullet bullet) {
-        double distance = (getTime() - bullet.fireTime) * bullet.speed;
-        return new Point2D.Double(
-                bullet.position.getX() + distance * sin(bullet.heading),
-                bullet.position.getY() + distance * cos(bullet.heading));
-    }
-
     static boolean
             renderBullets = false,
             renderForcePoints = false,
@@ -278,6 +341,9 @@ public class PinkPanther extends AdvancedRobot {
             case 't':
                 renderCurrentTarget = !renderCurrentTarget;
                 break;
+            case 'm':
+                FastMath.setFast(!FastMath.isFast());
+                break;
         }
     }
 
@@ -287,6 +353,11 @@ public class PinkPanther extends AdvancedRobot {
         int x = 25;
         int y = 25;
         Color color;
+        color = FastMath.isFast() ? Color.GREEN : Color.RED;
+        g.setColor(color);
+        g.drawString("m: Fast math", x, y);
+
+        y += 2 * height;
         color = renderCurrentTarget ? Color.GREEN : Color.RED;
         g.setColor(color);
         g.drawString("t: Render Current target", x, y);
@@ -314,11 +385,12 @@ public class PinkPanther extends AdvancedRobot {
         y += 2 * height;
         color = renderBullets ? Color.GREEN : Color.RED;
         g.setColor(color);
-        g.drawString("b: Render Bullets", x, y);
+        g.drawString("b: Render Waves", x, y);
     }
 
     @Override
     public void onPaint(Graphics2D g) {
+        profiler.start(paintSection);
         printCharMap(g);
         if (renderSelfOverlay) {
             renderSelfOverlay(g);
@@ -338,6 +410,7 @@ public class PinkPanther extends AdvancedRobot {
         if (renderCurrentTarget) {
             renderCurrentTarget(g);
         }
+        profiler.stop(paintSection);
     }
 
     private void renderSelfOverlay(Graphics2D g) {
@@ -352,8 +425,7 @@ public class PinkPanther extends AdvancedRobot {
     }
 
     private void renderNavVector(Graphics2D g) {
-        double[] totalVector = getTotalVector(getForcePoints());
-        Point2D destination = new Point2D.Double(getX() + totalVector[0], getY() + totalVector[1]);
+        Point2D destination = new Point2D.Double(getX() + forceField.getTotalX(), getY() + forceField.getTotalY());
         Point2D targetPos = currentPosition();
         g.setColor(Color.PINK);
         int fromX = (int) destination.getX();
@@ -364,15 +436,13 @@ public class PinkPanther extends AdvancedRobot {
     }
 
     private void renderForcePoints(Graphics2D g) {
-        Map<Point2D, Double> forcePoints = getForcePoints();
-        for (Map.Entry<Point2D, Double> fp : forcePoints.entrySet()) {
-            Point2D point = fp.getKey();
-            double[] vector = forceVector(point, fp.getValue());
-            Point2D firingPoint = new Point2D.Double(point.getX() + vector[0], point.getY() + vector[1]);
-            int fromX = (int) firingPoint.getX();
-            int fromY = (int) firingPoint.getY();
-            int toX = (int) point.getX();
-            int toY = (int) point.getY();
+        for (int i = 0; i < forceField.size(); i++) {
+            double x = forceField.getX(i);
+            double y = forceField.getY(i);
+            int fromX = (int) (x + forceField.getForceX(i));
+            int fromY = (int) (y + forceField.getForceY(i));
+            int toX = (int) x;
+            int toY = (int) y;
             g.setColor(new Color(0x80ff00ff, true));
             g.drawLine(fromX, fromY, toX, toY);
             g.setColor(new Color(0x800000ff, true));
@@ -388,11 +458,12 @@ public class PinkPanther extends AdvancedRobot {
             g.setColor(new Color(0x10ffffff, true));
             int proximity = 200;
             g.fillOval(x - proximity, y - proximity, proximity * 2, proximity * 2);
-            Color color = getRadarColor(recording.score());
+            int score = (int) targets.getScore(recording.name);
+            Color color = getRadarColor(score);
             g.setColor(color);
             g.fillRect(x - 20, y - 20, 40, 40);
             g.setColor(Color.BLUE);
-            g.drawString(String.valueOf(recording.score()), x - 20, y - 20);
+            g.drawString(String.valueOf(score), x - 20, y - 20);
         }
     }
 
@@ -404,9 +475,10 @@ public class PinkPanther extends AdvancedRobot {
 
     private void renderBullets(Graphics2D g) {
         g.setColor(new Color(0x80FF0000, true));
-        for (Bullet bullet : bullets) {
-            Point2D bulletPos = advanceBullet(bullet);
-            g.fillOval((int) bulletPos.getX() - 5, (int) bulletPos.getY() - 5, 10, 10);
+        for (int i = 0; i < surfer.size(); i++) {
+            EnemyWave wave = surfer.get(i);
+            int radius = (int) wave.radius(getTime());
+            g.drawOval((int) wave.originX - radius, (int) wave.originY - radius, 2 * radius, 2 * radius);
         }
     }
 
@@ -1,5 +1,8 @@
 package pbn.pinkpanther;
 
+import pbn.internals.Predictable;
+import pbn.internals.Prediction;
+import pbn.internals.Trajectory;
 import robocode.ScannedRobotEvent;
 import robocode.annotation.SafeStatic;
 
@@ -10,7 +13,7 @@ import static robocode.util.Utils.normalAbsoluteAngle;
 
 /**
  */
-public class Recording implements Comparable<Recording>{
+public class Recording implements Predictable {
     public final long time;
     public final Point2D position;
     public final double
@@ -18,6 +21,7 @@ public class Recording implements Comparable<Recording>{
             turnRate,
             heading;
     public final String name;
+    private Trajectory trajectory;
     public final  double energy;
     @SafeStatic
     public static PinkPanther robot;
@@ -39,36 +43,37 @@ public class Recording implements Comparable<Recording>{
         } else {
             turnRate = 0;
         }
-    }
-
-    //A score function - for target selection
-    public int score() {
-        int closeBots = 0;
-        for (Recording recording : PinkPanther.tracks.values()) {
-            closeBots += recording.advance(robot.getTime()).distance(advance(robot.getTime())) < 200 ? 1 : 0;
+        trajectory = Trajectory.reuse(previous == null ? null : previous.trajectory,
+                Trajectory.horizon(robot.getBattleFieldWidth(), robot.getBattleFieldHeight()));
+        if (previous != null) {
+            previous.trajectory = null; //handed over to the newest recording
         }
-        return (int) max(0, (73. * (1200 - robot.currentPosition().distance(advance(robot.getTime())))) / 1200
-                + (15. * (100 - energy)) / 100
-                + (20. * closeBots) / robot.getOthers()
-                + 2 * (name.equals(PinkPanther.target) ? 1 : 0)
-        );
+        trajectory.fill(time, x, y, heading, turnRate, velocity);
     }
 
     public Point2D advance(long time) {
-        long dt = time - this.time;
-        //iterative, because i'm stupid
-        double dx = 0;
-        double dy = 0;
-        for (long t = 0; t < dt; t++) {
-            dx += sin(heading + turnRate * t) * velocity;
-            dy += cos(heading + turnRate * t) * velocity;
-        }
-        return new Point2D.Double(position.getX() + dx, position.getY() + dy);
+        return new Point2D.Double(x(time), y(time));
     }
 
+    /**
+     * Predicted x coordinate at the given time, assuming constant velocity and turn rate
+     */
+    @Override
+    public double x(long time) {
+        if (trajectory != null) {
+            return trajectory.x(time);
+        }
+        return position.getX() + Prediction.dx(heading, turnRate, velocity, time - this.time);
+    }
 
+    /**
+     * Predicted y coordinate at the given time, assuming constant velocity and turn rate
+     */
     @Override
-    public int compareTo(Recording o) {
-        return o.score() - score();
+    public double y(long time) {
+        if (trajectory != null) {
+            return trajectory.y(time);
+        }
+        return position.getY() + Prediction.dy(heading, turnRate, velocity, time - this.time);
     }
 }
@@ -0,0 +1,281 @@
+package pbn.pinkpanther;
+
+import pbn.internals.FastMath;
+import pbn.internals.MovementPredictor;
+import pbn.internals.SegmentedHistogram;
+import robocode.Bullet;
+import robocode.Rules;
+import robocode.annotation.SafeStatic;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.*;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * Wave surfing: keeps a wave per shot detected from an enemy's energy drop, learns where each enemy hits us, and
+ * picks the movement that puts us in the least dangerous spot when the nearest waves arrive.
+ * <p/>
+ * The cost of a tick is bounded: at most {@value #MAX_WAVES} waves are kept, dropping the ones that would arrive
+ * last when there are more, and only the {@value #SURFED_WAVES} nearest are surfed, by predicting each of a fixed
+ * set of options for at most {@value #MAX_TICKS} ticks.
+ */
+class WaveSurfer {
+
+    static final int MAX_WAVES = 16;
+    static final int SURFED_WAVES = 2;
+    static final int MAX_TICKS = 100;
+    private static final int BINS = 31;
+    private static final int[] SEGMENTS = {5};
+    private static final double SEGMENT_DISTANCE = 200;
+    private static final double DECAY = .1;
+    private static final double ROBOT_HALF_WIDTH = 18;
+    /**
+     * Orbit directions surfed: clockwise, stop and counter-clockwise
+     */
+    private static final int[] OPTIONS = {1, 0, -1};
+    private static final double WALL_STICK = 120;
+    private static final double WALL_MARGIN = 20;
+
+    /**
+     * Where every enemy hit us, kept across rounds
+     */
+    @SafeStatic
+    static Map<String, SegmentedHistogram> dangers = new HashMap<String, SegmentedHistogram>();
+
+    private final PinkPanther robot;
+    private final MovementPredictor predictor;
+    private final EnemyWave[] waves = new EnemyWave[MAX_WAVES];
+    private final EnemyWave[] nearest = new EnemyWave[SURFED_WAVES];
+    private int size;
+    private final double fieldWidth, fieldHeight;
+
+    WaveSurfer(PinkPanther robot) {
+        this.robot = robot;
+        fieldWidth = robot.getBattleFieldWidth();
+        fieldHeight = robot.getBattleFieldHeight();
+        predictor = new MovementPredictor(fieldWidth, fieldHeight, MAX_TICKS);
+        for (int i = 0; i < waves.length; i++) {
+            waves[i] = new EnemyWave();
+        }
+    }
+
+    /**
+     * Add a wave for a shot fired by an enemy
+     *
+     * @param shooter  name of the enemy
+     * @param originX  x of the enemy when it fired
+     * @param originY  y of the enemy when it fired
+     * @param fireTime time the shot was fired
+     * @param power    bullet power
+     */
+    void fired(String shooter, double originX, double originY, long fireTime, double power) {
+        double speed = Rules.getBulletSpeed(power);
+        double x = robot.getX();
+        double y = robot.getY();
+        long time = robot.getTime();
+        EnemyWave wave;
+        if (size < waves.length) {
+            wave = waves[size++];
+        } else {
+            //full: replace the wave that arrives last, if this one arrives before it
+            wave = null;
+            double arrival = hypot(x - originX, y - originY) / speed + fireTime;
+            for (int i = 0; i < size; i++) {
+                double other = hypot(x - waves[i].originX, y - waves[i].originY) / waves[i].speed + waves[i].fireTime;
+                if (other > arrival) {
+                    arrival = other;
+                    wave = waves[i];
+                }
+            }
+            if (wave == null) {
+                return;
+            }
+        }
+        SegmentedHistogram histogram = dangers.get(shooter);
+        if (histogram == null) {
+            histogram = new SegmentedHistogram(SEGMENTS, BINS, DECAY);
+            for (int s = 0; s < SEGMENTS[0]; s++) {
+                histogram.add(histogram.offset(s), histogram.bin(0), .1); //until it hits us, expect head-on aim
+            }
+            dangers.put(shooter, histogram);
+        }
+        double directAngle = FastMath.atan2(x - originX, y - originY);
+        double lateralVelocity = robot.getVelocity() * sin(robot.getHeadingRadians() - directAngle);
+        int direction = lateralVelocity < 0 ? -1 : 1;
+        int segment = histogram.offset((int) (hypot(x - originX, y - originY) / SEGMENT_DISTANCE));
+        wave.set(originX, originY, min(fireTime, time), speed, directAngle, direction, shooter, histogram, segment);
+    }
+
+    /**
+     * Learn from a bullet that hit us or one of our bullets, and drop its wave
+     */
+    void hit(Bullet bullet) {
+        long time = robot.getTime();
+        double speed = Rules.getBulletSpeed(bullet.getPower());
+        for (int i = 0; i < size; i++) {
+            EnemyWave wave = waves[i];
+            if (wave.shooter.equals(bullet.getName()) && abs(wave.speed - speed) < .1
+                    && abs(hypot(bullet.getX() - wave.originX, bullet.getY() - wave.originY) - wave.radius(time))
+                    < 2 * speed) {
+                int bin = wave.dangers.bin(wave.guessFactor(bullet.getX(), bullet.getY()));
+                wave.dangers.add(wave.segment, bin, 1);
+                remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drop the waves of an enemy that died
+     */
+    void forget(String shooter) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (waves[i].shooter.equals(shooter)) {
+                remove(i);
+            }
+        }
+    }
+
+    private void remove(int i) {
+        EnemyWave wave = waves[i];
+        waves[i] = waves[--size];
+        waves[size] = wave;
+        wave.shooter = null;
+        wave.dangers = null;
+    }
+
+    /**
+     * Drop the waves that passed us, and find the ones that will arrive first
+     *
+     * @return number of waves to surf
+     */
+    private int update() {
+        double x = robot.getX();
+        double y = robot.getY();
+        long time = robot.getTime();
+        int count = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            EnemyWave wave = waves[i];
+            if (wave.radius(time) > hypot(x - wave.originX, y - wave.originY) + ROBOT_HALF_WIDTH) {
+                remove(i);
+            }
+        }
+        for (int n = 0; n < nearest.length; n++) {
+            nearest[n] = null;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                EnemyWave wave = waves[i];
+                double arrival = (hypot(x - wave.originX, y - wave.originY) - wave.radius(time)) / wave.speed;
+                if (arrival < best && (n == 0 || wave != nearest[0])) {
+                    best = arrival;
+                    nearest[n] = wave;
+                }
+            }
+            if (nearest[n] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Set the orders for this tick to the least dangerous option against the nearest waves
+     *
+     * @return false if there are no waves to surf
+     */
+    boolean surf() {
+        int count = update();
+        if (count == 0) {
+            return false;
+        }
+        int bestOption = 0;
+        double lowestDanger = Double.POSITIVE_INFINITY;
+        for (int option : OPTIONS) {
+            double danger = danger(option, count);
+            if (danger < lowestDanger) {
+                lowestDanger = danger;
+                bestOption = option;
+            }
+        }
+        EnemyWave wave = nearest[0];
+        if (bestOption == 0) {
+            robot.setAhead(0);
+            robot.setMaxVelocity(0);
+        } else {
+            robot.setMaxVelocity(Rules.MAX_VELOCITY);
+            double turn = orbitTurn(wave, robot.getX(), robot.getY(), robot.getHeadingRadians(), bestOption);
+            if (abs(turn) > PI / 2) {
+                robot.setTurnRightRadians(normalRelativeAngle(turn + PI));
+                robot.setAhead(-MAX_TICKS);
+            } else {
+                robot.setTurnRightRadians(turn);
+                robot.setAhead(MAX_TICKS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Predict an option until the surfed waves arrive, and add up the dangers where they do, nearer waves and waves
+     * from closer by counting more
+     */
+    private double danger(int option, int count) {
+        long time = robot.getTime();
+        predictor.start(robot.getX(), robot.getY(), robot.getHeadingRadians(), robot.getVelocity());
+        double danger = 0;
+        int wave = 0;
+        for (int t = 1; t <= MAX_TICKS && wave < count; t++) {
+            int last = predictor.ticks();
+            double x = predictor.x(last);
+            double y = predictor.y(last);
+            if (option == 0) {
+                predictor.setOrders(0, 0, 0, Rules.MAX_TURN_RATE_RADIANS);
+            } else {
+                double turn = orbitTurn(nearest[wave], x, y, predictor.heading(last), option);
+                double ahead = MAX_TICKS;
+                if (abs(turn) > PI / 2) {
+                    turn = normalRelativeAngle(turn + PI);
+                    ahead = -ahead;
+                }
+                predictor.setOrders(ahead, turn, Rules.MAX_VELOCITY, Rules.MAX_TURN_RATE_RADIANS);
+            }
+            if (!predictor.step()) {
+                break;
+            }
+            x = predictor.x(t);
+            y = predictor.y(t);
+            while (wave < count && nearest[wave].reached(x, y, time + t)) {
+                EnemyWave reached = nearest[wave];
+                double distance = max(ROBOT_HALF_WIDTH, hypot(x - reached.originX, y - reached.originY));
+                danger += reached.danger(x, y) / distance / (wave + 1);
+                wave++;
+            }
+        }
+        return danger;
+    }
+
+    /**
+     * Body turn to orbit the origin of a wave in the given direction, bent away from the walls
+     */
+    private double orbitTurn(EnemyWave wave, double x, double y, double heading, int direction) {
+        double angle = FastMath.atan2(x - wave.originX, y - wave.originY) + direction * PI / 2;
+        for (int i = 0; i < 20 && !inField(x + WALL_STICK * sin(angle), y + WALL_STICK * cos(angle)); i++) {
+            angle += direction * .05;
+        }
+        return normalRelativeAngle(angle - heading);
+    }
+
+    private boolean inField(double x, double y) {
+        return x > WALL_MARGIN && x < fieldWidth - WALL_MARGIN && y > WALL_MARGIN && y < fieldHeight - WALL_MARGIN;
+    }
+
+    int size() {
+        return size;
+    }
+
+    EnemyWave get(int i) {
+        return waves[i];
+    }
+}
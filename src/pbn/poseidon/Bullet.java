@@ -16,6 +16,13 @@ public class Bullet {
     public Point2D position;
 
     public Bullet(long fireTime, double speed, double heading, Point2D position) {
+        set(fireTime, speed, heading, position);
+    }
+
+    /**
+     * Reuse the bullet for another shot
+     */
+    public void set(long fireTime, double speed, double heading, Point2D position) {
         this.fireTime = fireTime;
         this.speed = speed;
         this.heading = heading;
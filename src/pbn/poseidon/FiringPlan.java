@@ -0,0 +1,114 @@
+package pbn.poseidon;
+
+import pbn.internals.AnytimeJob;
+
+import java.awt.geom.Point2D;
+import java.util.Collection;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.hypot;
+import static robocode.util.Utils.normalRelativeAngle;
+
+/**
+ * Looks for the shot at a coming firing time that could hit the most enemies. Every enemy is aimed at in turn with
+ * the guess-factor gun, and the shot is scored by the number of enemies whose own firing angle it passes within a
+ * robot's width of. Ties go to the current target, so in 1v1, or when no shots line up, the plan picks the target.
+ * <p/>
+ * One slice either aims at one enemy or scores one shot, so a plan over n enemies takes 2n slices.
+ */
+class FiringPlan extends AnytimeJob<Recording> {
+
+    private static final double ROBOT_RADIUS = 18;
+
+    /**
+     * Distance the predicted position of an enemy at the firing time may move before the plan is stale
+     */
+    private static final double TOLERANCE = 8;
+
+    private final Poseidon robot;
+    private Recording[] enemies = new Recording[8];
+    private double[] bearings = new double[8];
+    private double[] distances = new double[8];
+    private int count;
+    private int next;
+
+    long fireTime;
+    private int power;
+    private String target;
+    private Point2D from;
+
+    FiringPlan(Poseidon robot) {
+        this.robot = robot;
+    }
+
+    /**
+     * Start planning a shot
+     *
+     * @param recordings latest recordings of the enemies
+     * @param fireTime   time the gun can fire
+     * @param power      index of the bullet power
+     * @param target     current target, preferred on ties
+     * @param from       position to fire from
+     */
+    void start(Collection<Recording> recordings, long fireTime, int power, String target, Point2D from) {
+        if (recordings.size() > enemies.length) {
+            enemies = new Recording[recordings.size()];
+            bearings = new double[recordings.size()];
+            distances = new double[recordings.size()];
+        }
+        count = 0;
+        for (Recording recording : recordings) {
+            enemies[count++] = recording;
+        }
+        this.fireTime = fireTime;
+        this.power = power;
+        this.target = target;
+        this.from = from;
+        restart();
+    }
+
+    @Override
+    protected void reset() {
+        next = 0;
+    }
+
+    @Override
+    protected boolean step() {
+        if (next < count) {
+            Recording enemy = enemies[next];
+            bearings[next] = robot.firingAngle(enemy, power, fireTime, from);
+            distances[next] = from.distance(enemy.x(fireTime), enemy.y(fireTime));
+        } else if (next < 2 * count) {
+            int shot = next - count;
+            int hits = 0;
+            for (int i = 0; i < count; i++) {
+                if (abs(normalRelativeAngle(bearings[shot] - bearings[i])) * distances[i] < ROBOT_RADIUS) {
+                    hits++;
+                }
+            }
+            offer(enemies[shot], hits + (enemies[shot].name.equals(target) ? .5 : 0));
+        }
+        next++;
+        return next >= 2 * count;
+    }
+
+    /**
+     * @return true if the plan is done and its shot at the given target should pass through more than one enemy
+     */
+    boolean hitsSeveral(String target) {
+        return isDone() && getBest() != null && getBest().name.equals(target) && getBestScore() >= 2;
+    }
+
+    /**
+     * @return true if a new scan moved an enemy's predicted position at the firing time too far for the plan to hold
+     */
+    boolean invalidatedBy(Recording previous, Recording record) {
+        if (!isRunning() && !isDone()) {
+            return false;
+        }
+        if (previous == null) {
+            return true;
+        }
+        return hypot(previous.x(fireTime) - record.x(fireTime), previous.y(fireTime) - record.y(fireTime)) > TOLERANCE;
+    }
+}
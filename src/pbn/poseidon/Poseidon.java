@@ -1,5 +1,17 @@
 package pbn.poseidon;
 
+import pbn.internals.EnergyLedger;
+import pbn.internals.FastMath;
+import pbn.internals.ForceField;
+import pbn.internals.GunHeatTracker;
+import pbn.internals.KdTree;
+import pbn.internals.Radar;
+import pbn.internals.SegmentedHistogram;
+import pbn.internals.SpatialGrid;
+import pbn.internals.StatsPersistence;
+import pbn.internals.TargetSelector;
+import pbn.internals.TickProfiler;
+import pbn.internals.TickScheduler;
 import robocode.*;
 import robocode.annotation.SafeStatic;
 
@@ -7,7 +19,6 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Point2D;
 import java.util.*;
-import java.util.List;
 
 import static java.lang.Math.*;
 import static robocode.util.Utils.normalAbsoluteAngle;
@@ -24,103 +35,284 @@ public class Poseidon extends AdvancedRobot {
     public static final double PI2 = PI / 2;
 
     static final double[] powers = {.5, 1, 1.5, 3};
+    static final boolean FAST_MATH = true;
+    static final boolean PROFILE = false;
+    static final long TICK_BUDGET = 1000000;
+    static final double DEGRADE_FRACTION = .5;
+    static final double DEFER_FRACTION = .8;
+    static final int[] GF_SEGMENTS = {9, powers.length};
+    static final int GF_BINS = 31;
+    static final double GF_DECAY = 0;
+    /**
+     * Weights of the situation features: lateral velocity, advancing velocity, distance, wall distance, time since
+     * the last direction change and bullet flight time
+     */
+    static final double[] KNN_WEIGHTS = {4, 2, 1, 2, 2, 1};
+    static final int KNN_CAPACITY = 20000;
+    static final int KNN_K = 32;
+    private static final double ROBOT_HALF_WIDTH = 18;
+    private static final double EPSILON = 1e-6;
 
     @SafeStatic
-    static Map<String, int[][][]> guessFactors = new HashMap<String, int[][][]>();
+    static Map<String, SegmentedHistogram> guessFactors = new HashMap<String, SegmentedHistogram>();
+    @SafeStatic
+    static Map<String, KdTree> situations = new HashMap<String, KdTree>();
+    @SafeStatic
+    static StatsPersistence persistence = new StatsPersistence();
     static int opponents;
 
     static Map<String, Recording> tracks;
-    static Set<Bullet> bullets;
-    static List<Wave> waves;
+    /**
+     * Bullets in the air, in the first bulletCount slots; the ones past it are kept for reuse
+     */
+    static Bullet[] bullets;
+    static int bulletCount;
+    static WaveStore waves;
+    static GunHeatTracker gunHeat;
+    static EnergyLedger ledger;
     static int bfX, bfY, bfX2, bfY2;
-    private String lookingFor;
+    static ForceField forceField;
+    static TargetSelector<Recording> targets;
+    private Radar radar;
     private String target;
+    private TickProfiler profiler;
+    private int navigateSection, gunSection, scanSection, wavesSection, paintSection;
+    private TickScheduler scheduler;
+    private TickScheduler.Task rendering;
+    private FiringPlan firingPlan;
+    private final double[] query = new double[KNN_WEIGHTS.length];
 
     @Override
     public void run() {
+        initialize();
+        //noinspection InfiniteLoopStatement
+        do {
+            scheduler.runTasks();
+            execute();
+        } while (true);
+    }
+
+    /**
+     * Set up the state for a new round
+     */
+    void initialize() {
         setColors(Color.PINK, Color.PINK, Color.PINK, Color.PINK, Color.PINK);
+        profiler = new TickProfiler(this, PROFILE, 10);
+        navigateSection = profiler.section("navigate");
+        gunSection = profiler.section("gun");
+        scanSection = profiler.section("onScannedRobot");
+        wavesSection = profiler.section("waves");
+        paintSection = profiler.section("onPaint");
         tracks = new HashMap<String, Recording>(getOthers());
-        bullets = new HashSet<Bullet>();
-        waves = new LinkedList<Wave>();
+        bullets = new Bullet[16];
+        bulletCount = 0;
+        waves = new WaveStore(7);
+        gunHeat = new GunHeatTracker(getGunCoolingRate());
+        ledger = new EnergyLedger(gunHeat, getBattleFieldWidth(), getBattleFieldHeight());
+        forceField = new ForceField(16);
         opponents = max(0, getOthers());
         bfX = (int) getBattleFieldWidth();
         bfY = (int) getBattleFieldHeight();
         bfX2 = bfX / 2;
         bfY2 = bfY / 2;
+        targets = new TargetSelector<Recording>(new TargetSelector.Scorer<Recording>() {
+            @Override
+            public double score(TargetSelector<Recording> selector, int index) {
+                double energy = selector.getEnergy(index);
+                if (energy <= 16) { //finish off the weak ones first, weakest first
+                    return 1 + 16 - energy;
+                }
+                return -selector.getDistance(index); //otherwise the closest
+            }
+        }, new SpatialGrid(bfX, bfY, 100));
         setAdjustRadarForGunTurn(true);
         setAdjustRadarForRobotTurn(true);
         setAdjustGunForRobotTurn(true);
         Recording.robot = this;
+        FastMath.setFast(FAST_MATH);
+        firingPlan = new FiringPlan(this);
+        radar = new Radar(this, gunHeat);
+        scheduleTasks();
+    }
 
-        setTurnRadarRightRadians(Double.POSITIVE_INFINITY);
-        //noinspection InfiniteLoopStatement
-        do {
-            navigate();
-            gun();
-            execute();
-        } while (true);
+    /**
+     * Register the per-tick work, most important first
+     */
+    private void scheduleTasks() {
+        scheduler = new TickScheduler(this, TICK_BUDGET, DEGRADE_FRACTION, DEFER_FRACTION);
+        scheduler.add(new TickScheduler.Task("radar", TickScheduler.RADAR) {
+            @Override
+            protected void run(boolean degraded) {
+                radar.sweep();
+            }
+        });
+        scheduler.add(new TickScheduler.Task("navigate", TickScheduler.MOVEMENT) {
+            @Override
+            protected void run(boolean degraded) {
+                profiler.start(navigateSection);
+                navigate();
+                profiler.stop(navigateSection);
+            }
+        });
+        scheduler.add(new TickScheduler.Task("gun", TickScheduler.GUN) {
+            @Override
+            protected void run(boolean degraded) {
+                profiler.start(gunSection);
+                gun(degraded);
+                profiler.stop(gunSection);
+            }
+        });
+        scheduler.add(new TickScheduler.Task("waves", TickScheduler.WAVES) {
+            @Override
+            protected void run(boolean degraded) {
+                profiler.start(wavesSection);
+                updateWaves(degraded);
+                profiler.stop(wavesSection);
+            }
+        });
+        scheduler.add(new TickScheduler.Task("statistics", TickScheduler.STATISTICS) {
+            @Override
+            protected void run(boolean degraded) {
+                persistence.loadPending(Poseidon.this, 1);
+            }
+        });
+        rendering = new TickScheduler.Task("rendering", TickScheduler.RENDERING);
     }
 
     private int power = 2;
-    private void gun() {
-        //get optimal solution
-        double bearing = getGunHeadingRadians();
-        double bestDistSq = Double.POSITIVE_INFINITY;
+
+    /**
+     * Aim and fire at the target. While the gun cools down, plan the next shot in the time left in the tick.
+     * When degraded, keep the current target and skip ranking the enemies and planning.
+     */
+    private void gun(boolean degraded) {
         try {
-            Recording target = null;
-            if (getGunHeat() > 0.7 || this.target == null) {
-                target = new TreeSet<Recording>(tracks.values()).iterator().next();
-                this.target = target.name;
+            long time = getTime();
+            if (!degraded || this.target == null) {
+                targets.refresh(time, getX(), getY());
+            }
+            if (!degraded && getGunHeat() > 0) {
+                //the heat carries rounding errors, e.g. .30000000000000004 for .3, that would move the fire time
+                planShot(time + (long) ceil(getGunHeat() / getGunCoolingRate() - EPSILON));
             }
-        /*for (Recording enemy : tracks.values()) {
-            for (int shotPower = 0; shotPower < powers.length; shotPower++) {
-                double firingAngle = firingAngle(enemy.name, shotPower);
-                double curDistSq = 0;
-                for (String other : tracks.keySet()) {
-                    curDistSq += pow(firingAngle - firingAngle(other, shotPower), 2);
+            if (this.target == null || getGunHeat() > 0.7 && !degraded) {
+                Recording target = firingPlan.isDone() ? firingPlan.getBest() : null;
+                if (target == null) {
+                    target = targets.best();
                 }
-                if (curDistSq < bestDistSq) {
-                    power = shotPower;
-                    bearing = firingAngle;
+                if (target != null) {
+                    this.target = target.name;
                 }
             }
-        }*/
-            bearing = firingAngle(this.target, power);
+            double bearing = firingAngle(this.target, power);
             if (abs(bearing - getGunHeadingRadians())  > toRadians(2) ) {
                 setTurnGunRightRadians(normalRelativeAngle(bearing - getGunHeadingRadians()));
-            } else if (abs(getGunTurnRemaining()) < 2 && getGunHeat() == 0) {
+            } else if (abs(getGunTurnRemaining()) < 2 && getGunHeat() == 0
+                    && (firingPlan.hitsSeveral(this.target) || lineOfFireClear(this.target))) {
                 setFire(powers[power]);
             }
         } catch (Exception ignored) {
         }
     }
 
+    /**
+     * Start or continue planning the shot at the given time
+     */
+    private void planShot(long fireTime) {
+        if (!firingPlan.isRunning() && !firingPlan.isDone() || firingPlan.fireTime != fireTime) {
+            firingPlan.start(tracks.values(), fireTime, power, target, currentPosition());
+        }
+        firingPlan.run(System.nanoTime() + scheduler.remainingNanos());
+    }
+
+    /**
+     * Checks that no other robot is in the way of a shot along the current gun heading
+     */
+    private boolean lineOfFireClear(String targetName) {
+        int target = targets.indexOf(targetName);
+        if (target < 0) {
+            return true;
+        }
+        int hit = targets.getGrid().firstHit(getX(), getY(), getGunHeadingRadians(), targets.getDistance(target), -1);
+        return hit < 0 || hit == target;
+    }
+
     private double firingAngle(String target, int powerIndex) {
-        Recording recording = tracks.get(target);
-        Point2D pos = recording.advance(getTime());
-        int distance = (int) (pos.distance(currentPosition()) / 100);
+        return firingAngle(tracks.get(target), powerIndex, getTime(), currentPosition());
+    }
+
+    /**
+     * Guess-factor firing angle at an enemy, for a shot from the given position at the given time. Once enough waves
+     * have broken on the enemy, the guess factor comes from the nearest situations seen before; until then from the
+     * segmented statistics.
+     */
+    double firingAngle(Recording recording, int powerIndex, long time, Point2D from) {
+        Point2D pos = recording.advance(time);
         double offset = 0;
-        if (guessFactors.containsKey(target)) {
-            int[] factors = guessFactors.get(target)[((int) recording.velocity)][powerIndex];
-            int bestAngle = factors.length / 2 + 1;
-            for (int i = 0; i < factors.length; i++) {
-                if (factors[bestAngle] < factors[i]) {
-                    bestAngle = i;
+        KdTree tree = situations.get(recording.name);
+        SegmentedHistogram factors = guessFactors.get(recording.name);
+        if (tree != null && tree.size() >= KNN_K) {
+            double speed = Rules.getBulletSpeed(powers[powerIndex]);
+            situation(recording, speed, from.getX(), from.getY(), query);
+            double escapeAngle = FastMath.escapeAngleForSpeed(speed);
+            double bandwidth = atan(ROBOT_HALF_WIDTH / max(ROBOT_HALF_WIDTH, from.distance(pos))) / escapeAngle;
+            offset = recording.direction * densestGuessFactor(tree, bandwidth) * escapeAngle;
+        } else if (factors != null) {
+            int segment = factors.offset((int) abs(recording.velocity), powerIndex);
+            double guessFactor = factors.guessFactor(factors.bestBin(segment));
+            offset = recording.direction * guessFactor * FastMath.escapeAngle(powers[powerIndex]);
+        }
+        double bearing = getAbsoluteBearing(from, pos);
+        return normalAbsoluteAngle(bearing + offset);
+    }
+
+    /**
+     * The guess factor of the nearest situations to {@link #query} around which their guess factors are densest.
+     * Each neighbour adds a quartic kernel of the given bandwidth, weighted by its closeness.
+     */
+    private double densestGuessFactor(KdTree tree, double bandwidth) {
+        int found = tree.nearest(query, KNN_K);
+        double best = 0;
+        double bestDensity = -1;
+        for (int i = 0; i < found; i++) {
+            double candidate = tree.value(i);
+            double density = 0;
+            for (int j = 0; j < found; j++) {
+                double u = (candidate - tree.value(j)) / bandwidth;
+                if (abs(u) < 1) {
+                    double kernel = 1 - u * u;
+                    density += kernel * kernel / (1 + tree.distance(j));
                 }
             }
-            double guessFactor = (double)(bestAngle - (factors.length - 1) / 2) / ((factors.length - 1) / 2);
-            offset = recording.direction * guessFactor * asin(8 / Rules.getBulletSpeed(powers[powerIndex]));
+            if (density > bestDensity) {
+                bestDensity = density;
+                best = candidate;
+            }
         }
-        double bearing = getAbsoluteBearing(currentPosition(), pos);
-        return normalAbsoluteAngle(bearing + offset);
+        return best;
     }
 
-    private void navigate() {
-        Map<Point2D, Integer> forcePoints = getForcePoints();
-        double[] totalVector = getTotalVector(forcePoints);
-        Point2D destination = new Point2D.Double(getX() + totalVector[0], getY() + totalVector[1]);
+    /**
+     * Features of an enemy's situation for a shot from the given point, each scaled to [0, 1]: lateral velocity,
+     * advancing velocity, distance, distance to the nearest wall, time since the last direction change and bullet
+     * flight time
+     */
+    static void situation(Recording recording, double bulletSpeed, double fromX, double fromY, double[] features) {
+        double x = recording.position.getX();
+        double y = recording.position.getY();
+        double distance = hypot(x - fromX, y - fromY);
+        double relativeHeading = recording.headingRadians - FastMath.atan2(x - fromX, y - fromY);
+        features[0] = abs(recording.velocity * FastMath.sin(relativeHeading)) / Rules.MAX_VELOCITY;
+        features[1] = (recording.velocity * FastMath.cos(relativeHeading) / Rules.MAX_VELOCITY + 1) / 2;
+        features[2] = min(1, distance / 1000);
+        features[3] = min(1, min(min(x, bfX - x), min(y, bfY - y)) / min(bfX2, bfY2));
+        features[4] = min(1, (recording.time - recording.directionTime) / 100.);
+        features[5] = min(1, distance / bulletSpeed / 100);
+    }
 
-        double targetBearing = getAbsoluteBearing(currentPosition(), destination);
+    private void navigate() {
+        updateForceField();
+        double targetBearing = normalAbsoluteAngle(FastMath.atan2(forceField.getTotalX(), forceField.getTotalY()));
         double turn = normalRelativeAngle(targetBearing - getHeadingRadians());
         double ahead = 16;
         if (abs(turn) > PI2) {
@@ -133,46 +325,56 @@ public class Poseidon extends AdvancedRobot {
         }
     }
 
-    private double[] getTotalVector(Map<Point2D, Integer> forcePoints) {
-        double[] totalVector = new double[]{0, 0};
-        for (Map.Entry<Point2D, Integer> forcePoint : forcePoints.entrySet()) {
-            double[] vector = forceVector(forcePoint.getKey(), forcePoint.getValue());
-            totalVector[0] += vector[0];
-            totalVector[1] += vector[1];
+    /**
+     * Fill the force field for this tick, and sum it at our current position
+     */
+    void updateForceField() {
+        forceField.clear();
+        int fixedPointValue = max(2, getOthers() / 2 + bulletCount / 8);
+        double x = getX();
+        double y = getY();
+        long time = getTime();
+
+        forceField.add(bfX2, bfY2, BOT_WEIGHT); //center
+        forceField.add(x, y < bfY2 ? 0 : bfY, fixedPointValue); //walls
+        forceField.add(x < bfX2 ? 0 : bfX, y, fixedPointValue);
+        for (int i = 0; i < targets.size(); i++) {
+            Recording bot = targets.get(i);
+            forceField.add(bot.x(time + 1), bot.y(time + 1), 2 + (int) bot.energy / 10); //bots
         }
-        return totalVector;
-    }
-
-    private Map<Point2D, Integer> getForcePoints() {
-        Map<Point2D, Integer> points = new HashMap<Point2D, Integer>();
-        int fixedPointValue = max(2, getOthers() / 2 + bullets.size() / 8);
-
-        points.put(new Point2D.Double(bfX2, bfY2), BOT_WEIGHT); //center
-        points.put(new Point2D.Double(getX(), getY() < bfY2 ? 0 : bfY), fixedPointValue); //walls
-        points.put(new Point2D.Double(getX() < bfX2 ? 0 : bfX, getY()), fixedPointValue);
-        for (Recording bot : tracks.values()) {
-            points.put(bot.advance(getTime() + 1), 2 + (int) bot.energy / 10); //bots
-        }
-        for (Iterator<Bullet> iterator = bullets.iterator(); iterator.hasNext();) {
-            Bullet bullet = iterator.next();
-            Point2D p = advanceBullet(bullet);
-            if (outsideBF(p)) {
-                iterator.remove();
+        for (int i = bulletCount - 1; i >= 0; i--) {
+            Bullet bullet = bullets[i];
+            double distance = (time - bullet.fireTime) * bullet.speed;
+            double bulletX = bullet.position.getX() + distance * FastMath.sin(bullet.heading);
+            double bulletY = bullet.position.getY() + distance * FastMath.cos(bullet.heading);
+            if (outsideBF(bulletX, bulletY)) {
+                //swap it past the end, to be reused
+                bullets[i] = bullets[--bulletCount];
+                bullets[bulletCount] = bullet;
             } else {
-                points.put(p, BULLET_WEIGHT);
+                forceField.add(bulletX, bulletY, BULLET_WEIGHT);
             }
         }
-        return points;
+        forceField.sum(x, y);
     }
 
-    private boolean outsideBF(Point2D p) {
-        return p.getX() < 0 || p.getX() > bfX || p.getY() < 0 || p.getY() > bfY;
+    private static void addBullet(long fireTime, double speed, double heading, Point2D position) {
+        if (bulletCount == bullets.length) {
+            Bullet[] grown = new Bullet[bullets.length * 2];
+            System.arraycopy(bullets, 0, grown, 0, bulletCount);
+            bullets = grown;
+        }
+        Bullet bullet = bullets[bulletCount];
+        if (bullet == null) {
+            bullets[bulletCount] = new Bullet(fireTime, speed, heading, position);
+        } else {
+            bullet.set(fireTime, speed, heading, position);
+        }
+        bulletCount++;
     }
 
-    private double[] forceVector(Point2D point, int weight) {
-        double F = (weight) / pow(point.distance(currentPosition()), 2);
-        double bearing = getAbsoluteBearing(point, currentPosition());
-        return new double[]{sin(bearing) * F, cos(bearing) * F};
+    private boolean outsideBF(double x, double y) {
+        return x < 0 || x > bfX || y < 0 || y > bfY;
     }
 
     public Point2D currentPosition() {
@@ -181,74 +383,118 @@ public class Poseidon extends AdvancedRobot {
 
     @Override
     public void onScannedRobot(ScannedRobotEvent event) {
+        profiler.start(scanSection);
         Recording previous = tracks.get(event.getName());
         Recording record = new Recording(event, previous);
         tracks.put(record.name, record);
-        try {
-            double energyDrop = previous.energy - record.energy;
-            if (energyDrop > 0 && energyDrop <= 3) { //assume that everyone shoots at me! A Lot!
-                bullets.add(new Bullet(previous.time, Rules.getBulletSpeed(energyDrop), getAbsoluteBearing(record.position, currentPosition()), record.position));
-            }
-        } catch (NullPointerException ignored) {
+        targets.update(record.name, record, record.energy);
+        if (firingPlan.invalidatedBy(previous, record)) {
+            firingPlan.cancel();
         }
+        double firePower = ledger.scanned(record.name, record.time, record.energy,
+                record.position.getX(), record.position.getY(), record.velocity);
+        if (firePower > 0) { //assume that everyone shoots at me!
+            addBullet(previous.time, Rules.getBulletSpeed(firePower), getAbsoluteBearing(record.position, currentPosition()), record.position);
+        }
+        radar.scanned(record.name, record, record.time);
+        profiler.stop(scanSection);
+    }
 
+    @Override
+    public void onBulletHit(BulletHitEvent event) {
+        ledger.bulletHit(event.getName(), event.getBullet().getPower());
+    }
 
-        //oldest-seen radar - degenerates to a constant-lock (almost) radar in 1v1
-        if (tracks.size() == getOthers() && (lookingFor == null || record.name.equals(lookingFor))) {
-            Recording oldest = record;
-            for (Recording recording : tracks.values()) {
-                if (oldest.time > recording.time) {
-                    oldest = recording;
-                }
-            }
-            lookingFor = oldest.name;
-            double d = normalRelativeAngle(getAbsoluteBearing(currentPosition(), oldest.position) - getRadarHeadingRadians());
-            setTurnRadarRightRadians(d * Double.POSITIVE_INFINITY);
-        }
+    @Override
+    public void onHitByBullet(HitByBulletEvent event) {
+        ledger.hitByBullet(event.getBullet().getName(), event.getBullet().getPower());
+    }
+
+    @Override
+    public void onHitRobot(HitRobotEvent event) {
+        ledger.hitRobot(event.getName());
+    }
+
+    @Override
+    public void onSkippedTurn(SkippedTurnEvent event) {
+        profiler.onSkippedTurn(event);
     }
 
     @Override
     public void onRobotDeath(RobotDeathEvent event) {
         tracks.remove(event.getName());
-        if (event.getName().equals(lookingFor)) {
-            lookingFor = null;
-        }
+        targets.remove(event.getName());
+        radar.forget(event.getName());
         if (event.getName().equals(target)) {
             target = null;
         }
+        ledger.forget(event.getName());
+        gunHeat.forget(event.getName());
+        firingPlan.cancel();
     }
 
     @Override
     public void onStatus(StatusEvent e) {
+        scheduler.beginTick();
+    }
+
+    /**
+     * Fire a virtual wave at every enemy for every bullet power, and check the waves that can break this tick.
+     * When degraded, only fire waves for the bullet power in use.
+     */
+    private void updateWaves(boolean degraded) {
+        int firstPower = degraded ? power : 0;
+        int lastPower = degraded ? power : powers.length - 1;
         try {
+            double x = getX();
+            double y = getY();
+            long time = getTime();
             for (Recording record : tracks.values()) {
-                int[][][] factors = guessFactors.get(record.name);
+                SegmentedHistogram factors = guessFactors.get(record.name);
                 if (factors == null) {
-                    guessFactors.put(record.name, (factors = new int[9][powers.length][31]));
+                    guessFactors.put(record.name, (factors = new SegmentedHistogram(GF_SEGMENTS, GF_BINS, GF_DECAY)));
+                    persistence.register(record.name, "gf", factors);
                 }
-                for (int power = 0; power < powers.length; power++) {
-                    int[] data = factors[((int) abs(record.velocity))][power];
-                    waves.add(new Wave(currentPosition(), getAbsoluteBearing(currentPosition(), record.position), Rules.getBulletSpeed(powers[power]), getTime(), record.name, record.direction, data));
+                KdTree tree = situations.get(record.name);
+                if (tree == null) {
+                    situations.put(record.name, (tree = new KdTree(KNN_WEIGHTS, KNN_CAPACITY, KNN_K)));
                 }
-            }
-            for (Iterator<Wave> iterator = waves.iterator(); iterator.hasNext(); ) {
-                Wave wave = iterator.next();
-                boolean b = wave.checkBreak(tracks, getTime());
-                if (b) {
-                    iterator.remove();
+                double bearing = getAbsoluteBearing(currentPosition(), record.position);
+                //the gap checkBreak will measure: to where the target is predicted now, not where it was last scanned
+                double distance = Point2D.distance(record.x(time), record.y(time), x, y);
+                for (int power = firstPower; power <= lastPower; power++) {
+                    int segment = factors.offset((int) abs(record.velocity), power);
+                    Wave wave = waves.obtain();
+                    double speed = Rules.getBulletSpeed(powers[power]);
+                    wave.set(x, y, bearing, speed, time, record.name, record.direction, factors, segment);
+                    if (wave.features == null) {
+                        wave.features = new double[KNN_WEIGHTS.length];
+                    }
+                    situation(record, speed, x, y, wave.features);
+                    wave.situations = tree;
+                    waves.add(wave, wave.earliestBreak(time, distance));
                 }
             }
+            waves.process(tracks, time);
         } catch (NullPointerException ignored) {
         }
     }
 
+    @Override
+    public void onRoundEnded(RoundEndedEvent event) {
+        persistence.save(this);
+        profiler.summary(out);
+        scheduler.summary(out);
+        ledger.summary(out);
+    }
+
     public static double getAbsoluteBearing(Point2D from, Point2D to) {
         double dY = to.getY() - from.getY();
         double dX = to.getX() - from.getX();
         double angle;
         if (dY != 0) {
             //noinspection SuspiciousNameCombination
-            angle = atan2(dX, dY);
+            angle = FastMath.atan2(dX, dY);
         } else {
             angle = dX > 0 ? PI2 : 3 * PI2;
         }
@@ -256,8 +502,8 @@ public class Poseidon extends AdvancedRobot {
     }
 
     private Point2D advanceBullet(Bullet bullet) {
-        double x = bullet.position.getX() + (getTime() - bullet.fireTime) * sin(bullet.heading) * bullet.speed;
-        double y = bullet.position.getY() + (getTime() - bullet.fireTime) * cos(bullet.heading) * bullet.speed;
+        double x = bullet.position.getX() + (getTime() - bullet.fireTime) * FastMath.sin(bullet.heading) * bullet.speed;
+        double y = bullet.position.getY() + (getTime() - bullet.fireTime) * FastMath.cos(bullet.heading) * bullet.speed;
         return new Point2D.Double(x, y);
     }
 
@@ -294,6 +540,9 @@ public class Poseidon extends AdvancedRobot {
             case 'v':
                 renderWaves = !renderWaves;
                 break;
+            case 'm':
+                FastMath.setFast(!FastMath.isFast());
+                break;
         }
     }
 
@@ -303,6 +552,11 @@ public class Poseidon extends AdvancedRobot {
         int x = 25;
         int y = 25;
         Color color;
+        color = FastMath.isFast() ? Color.GREEN : Color.RED;
+        g.setColor(color);
+        g.drawString("m: Fast math", x, y);
+
+        y += 2 * height;
         color = renderWaves ? Color.GREEN : Color.RED;
         g.setColor(color);
         g.drawString("v: Render Waves", x, y);
@@ -340,6 +594,11 @@ public class Poseidon extends AdvancedRobot {
 
     @Override
     public void onPaint(Graphics2D g) {
+        int mode = scheduler.admit(rendering);
+        if (mode == TickScheduler.DEFERRED) {
+            return;
+        }
+        profiler.start(paintSection);
         printCharMap(g);
         if (renderSelfOverlay) {
             int opportunityRadius = 500;
@@ -363,16 +622,12 @@ public class Poseidon extends AdvancedRobot {
                 g.drawLine(x,y, (int) advance.getX(),(int)advance.getY());
             }
         }
-        Map<Point2D, Integer> forcePoints = getForcePoints();
-        for (Map.Entry<Point2D, Integer> fp : forcePoints.entrySet()) {
-            Point2D point = fp.getKey();
-            double[] vector = forceVector(point, fp.getValue());
-            if (renderForcePoints) {
-                renderForcePoints(g, point, vector);
+        if (renderForcePoints) {
+            for (int i = 0; i < forceField.size(); i++) {
+                renderForcePoint(g, forceField.getX(i), forceField.getY(i), forceField.getForceX(i), forceField.getForceY(i));
             }
         }
-        double[] totalVector = getTotalVector(forcePoints);
-        Point2D destination = new Point2D.Double(getX() + totalVector[0], getY() + totalVector[1]);
+        Point2D destination = new Point2D.Double(getX() + forceField.getTotalX(), getY() + forceField.getTotalY());
         if (renderNavVector) {
             Point2D targetPos = currentPosition();
             g.setColor(Color.PINK);
@@ -388,31 +643,33 @@ public class Poseidon extends AdvancedRobot {
         if (renderCurrentTarget) {
             renderCurrentTarget(g);
         }
-        if (renderWaves) {
+        if (renderWaves && mode == TickScheduler.FULL) { //there can be thousands
             renderWaves(g);
         }
+        profiler.stop(paintSection);
     }
 
     private void renderWaves(Graphics2D g) {
         g.setStroke(new BasicStroke(2));
         g.setColor(new Color(0x80FF8000, true));
-        for (Wave wave : waves) {
-            int y = (int) wave.origin.getY();
-            int x = (int) wave.origin.getX();
-            int escapeAngle = (int) toDegrees(asin(8 / wave.velocity));
-            int heading = (int) toDegrees(wave.heading);
-            int radius = (int) (wave.velocity * (getTime() - wave.fireTime));
-            g.drawArc(x - radius, y - radius, radius * 2, radius * 2, heading - escapeAngle, escapeAngle * 2);
-            g.fillOval(x - 2, y - 2, 4, 4);
+        for (int bucket = 0; bucket < waves.bucketCount(); bucket++) {
+            for (Wave wave = waves.head(bucket); wave != null; wave = wave.next) {
+                int y = (int) wave.originY;
+                int x = (int) wave.originX;
+                int escapeAngle = (int) toDegrees(asin(8 / wave.velocity));
+                int heading = (int) toDegrees(wave.heading);
+                int radius = (int) (wave.velocity * (getTime() - wave.fireTime));
+                g.drawArc(x - radius, y - radius, radius * 2, radius * 2, heading - escapeAngle, escapeAngle * 2);
+                g.fillOval(x - 2, y - 2, 4, 4);
+            }
         }
     }
 
-    private void renderForcePoints(Graphics2D g, Point2D point, double[] vector) {
-        Point2D firingPoint = new Point2D.Double(point.getX() + vector[0], point.getY() + vector[1]);
-        int fromX = (int) firingPoint.getX();
-        int fromY = (int) firingPoint.getY();
-        int toX = (int) point.getX();
-        int toY = (int) point.getY();
+    private void renderForcePoint(Graphics2D g, double x, double y, double forceX, double forceY) {
+        int fromX = (int) (x + forceX);
+        int fromY = (int) (y + forceY);
+        int toX = (int) x;
+        int toY = (int) y;
         g.setColor(new Color(0x80ff00ff, true));
         g.drawLine(fromX, fromY, toX, toY);
         g.setColor(new Color(0x800000ff, true));
@@ -421,8 +678,8 @@ public class Poseidon extends AdvancedRobot {
 
     private void renderBullets(Graphics2D g) {
         g.setColor(new Color(0x80FF0000, true));
-        for (Bullet bullet : bullets) {
-            Point2D bulletPos = advanceBullet(bullet);
+        for (int i = 0; i < bulletCount; i++) {
+            Point2D bulletPos = advanceBullet(bullets[i]);
             g.fillOval((int) bulletPos.getX() - 5, (int) bulletPos.getY() - 5, 10, 10);
         }
     }
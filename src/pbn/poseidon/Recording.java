@@ -1,5 +1,8 @@
 package pbn.poseidon;
 
+import pbn.internals.Predictable;
+import pbn.internals.Prediction;
+import pbn.internals.Trajectory;
 import robocode.ScannedRobotEvent;
 import robocode.annotation.SafeStatic;
 
@@ -10,7 +13,7 @@ import static robocode.util.Utils.*;
 
 /**
  */
-public class Recording implements Comparable<Recording>{
+public class Recording implements Predictable {
     public final long time;
     public final Point2D position;
     public final double
@@ -18,8 +21,13 @@ public class Recording implements Comparable<Recording>{
             turnRate,
             headingRadians;
     public final String name;
+    private Trajectory trajectory;
     public final double energy;
     public final int direction;
+    /**
+     * Time the lateral direction last changed
+     */
+    public final long directionTime;
     @SafeStatic
     public static Poseidon robot;
     public final double bearing;
@@ -41,6 +49,12 @@ public class Recording implements Comparable<Recording>{
         } else {
             turnRate = 0;
         }
+        trajectory = Trajectory.reuse(previous == null ? null : previous.trajectory,
+                Trajectory.horizon(robot.getBattleFieldWidth(), robot.getBattleFieldHeight()));
+        if (previous != null) {
+            previous.trajectory = null; //handed over to the newest recording
+        }
+        trajectory.fill(time, x, y, headingRadians, turnRate, velocity);
         if (velocity != 0 && previous != null) {
             direction = (int) signum(bearing - previous.bearing);
         } else if (previous != null) {
@@ -48,31 +62,32 @@ public class Recording implements Comparable<Recording>{
         } else {
             direction = 1; //Chosen arbitrarily
         }
+        directionTime = previous == null ? time : previous.direction != direction ? time : previous.directionTime;
     }
 
     public Point2D advance(long time) {
-        long dt = time - this.time;
-        //iterative, because i'm stupid
-        double dx = 0;
-        double dy = 0;
-        for (long t = 0; t < dt; t++) {
-            dx += sin(headingRadians + turnRate * t) * velocity;
-            dy += cos(headingRadians + turnRate * t) * velocity;
-        }
-        return new Point2D.Double(position.getX() + dx, position.getY() + dy);
+        return new Point2D.Double(x(time), y(time));
     }
 
+    /**
+     * Predicted x coordinate at the given time, assuming constant velocity and turn rate
+     */
+    @Override
+    public double x(long time) {
+        if (trajectory != null) {
+            return trajectory.x(time);
+        }
+        return position.getX() + Prediction.dx(headingRadians, turnRate, velocity, time - this.time);
+    }
 
+    /**
+     * Predicted y coordinate at the given time, assuming constant velocity and turn rate
+     */
     @Override
-    public int compareTo(Recording o) {
-        if (energy <= 16 && o.energy > 16) {
-            return -1;
-        } else if (energy > 16 && o.energy <= 16) {
-            return 1;
-        } else if (energy <= 16 && o.energy <= 16) {
-            return (int) (energy - o.energy);
-        } else {
-            return (int) (robot.currentPosition().distance(advance(robot.getTime())) - robot.currentPosition().distance(o.advance(robot.getTime())));
+    public double y(long time) {
+        if (trajectory != null) {
+            return trajectory.y(time);
         }
+        return position.getY() + Prediction.dy(headingRadians, turnRate, velocity, time - this.time);
     }
 }
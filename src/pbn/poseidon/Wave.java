@@ -1,46 +1,82 @@
 package pbn.poseidon;
 
-import java.awt.geom.Point2D;
+import pbn.internals.FastMath;
+import pbn.internals.KdTree;
+import pbn.internals.SegmentedHistogram;
+import robocode.Rules;
+
 import java.util.Map;
 
 import static java.lang.Math.*;
-import static pbn.poseidon.Poseidon.getAbsoluteBearing;
+import static robocode.util.Utils.normalAbsoluteAngle;
 import static robocode.util.Utils.normalRelativeAngle;
 
 /**
+ * A virtual guess-factor wave. Waves are pooled by the {@link WaveStore}, so all state is set through
+ * {@link #set} rather than the constructor.
  */
 public class Wave {
-    Point2D origin;
+    double originX, originY;
     double heading;
     double velocity;
     long fireTime;
     String target;
     int direction;
-    int[] data;
+    SegmentedHistogram stats;
+    int segment;
+    /**
+     * Situation of the target when the wave was fired, see {@link Poseidon#situation}, and the tree to learn it in
+     */
+    double[] features;
+    KdTree situations;
+
+    /**
+     * Distance between the target and the wave front at the last check
+     */
+    double gap;
+    long dueTime;
+    Wave next;
 
-    public Wave(Point2D origin, double heading, double velocity, long fireTime, String target, int direction, int[] data) {
-        this.origin = origin;
+    void set(double originX, double originY, double heading, double velocity, long fireTime, String target, int direction,
+             SegmentedHistogram stats, int segment) {
+        this.originX = originX;
+        this.originY = originY;
         this.heading = heading;
         this.velocity = velocity;
         this.fireTime = fireTime;
         this.target = target;
         this.direction = direction;
-        this.data = data;
+        this.stats = stats;
+        this.segment = segment;
+    }
+
+    /**
+     * The first time the wave could possibly reach a target that is the given distance away from the wave front,
+     * if the target drives straight at the origin.
+     */
+    long earliestBreak(long time, double gap) {
+        return time + max(1, (long) ceil((gap - 10) / (velocity + Rules.MAX_VELOCITY)));
     }
 
     public boolean checkBreak(Map<String, Recording> tracks, long time) {
         Recording target = tracks.get(this.target);
-        if (target != null) {
-            Point2D currentPoint = target.advance(time);
-            double dp = currentPoint.distance(origin) - (time - fireTime) * velocity;
-            if ( abs(dp) < 10) { // Wave intersects bot
-                double guessFactor = max(-1, min(1, normalRelativeAngle(getAbsoluteBearing(origin, currentPoint) - heading)  / asin(8 / velocity))) * direction;
-                int index = (int) round((data.length - 1) / 2 * (guessFactor + 1));
-                data[index]++;
-                return true;
-            } else if (dp < -10) { // Wave passed target
-                return true;
+        if (target == null) {
+            return true; //target is dead
+        }
+        double dX = target.x(time) - originX;
+        double dY = target.y(time) - originY;
+        double dp = sqrt(dX * dX + dY * dY) - (time - fireTime) * velocity;
+        gap = dp;
+        if ( abs(dp) < 10) { // Wave intersects bot
+            double bearing = normalAbsoluteAngle(FastMath.atan2(dX, dY));
+            double guessFactor = max(-1, min(1, normalRelativeAngle(bearing - heading)  / FastMath.escapeAngleForSpeed(velocity))) * direction;
+            stats.add(segment, stats.bin(guessFactor), 1);
+            if (situations != null) {
+                situations.add(features, guessFactor);
             }
+            return true;
+        } else if (dp < -10) { // Wave passed target
+            return true;
         }
         return false;
     }
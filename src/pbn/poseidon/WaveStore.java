@@ -0,0 +1,115 @@
+package pbn.poseidon;
+
+import java.util.Map;
+
+import static java.lang.Math.max;
+
+/**
+ * Pooled store of live waves, bucketed by the earliest tick they can break.
+ * <p/>
+ * Buckets form a ring indexed by tick, each holding a linked list of waves. A tick only looks at its own bucket;
+ * a wave that is checked and has not broken yet is moved to the bucket of the next tick it could possibly reach its
+ * target. Waves due further ahead than the ring is long just pass through their bucket once per lap. Broken waves
+ * are returned to a free list and reused.
+ */
+class WaveStore {
+
+    private final Wave[] buckets;
+    private final int mask;
+    private Wave free;
+    private int size;
+    private long processed = -1;
+
+    /**
+     * @param bucketBits log2 of the number of buckets
+     */
+    WaveStore(int bucketBits) {
+        buckets = new Wave[1 << bucketBits];
+        mask = buckets.length - 1;
+    }
+
+    /**
+     * Get a wave from the pool. It must be initialised and {@link #add added}.
+     */
+    Wave obtain() {
+        Wave wave = free;
+        if (wave == null) {
+            return new Wave();
+        }
+        free = wave.next;
+        wave.next = null;
+        return wave;
+    }
+
+    /**
+     * Add a wave, to be checked at the given time
+     */
+    void add(Wave wave, long dueTime) {
+        wave.dueTime = dueTime;
+        int bucket = (int) (dueTime & mask);
+        wave.next = buckets[bucket];
+        buckets[bucket] = wave;
+        size++;
+    }
+
+    /**
+     * Check the waves that can break at the given time, and the ones that could have broken at the ticks since the
+     * last call, e.g. when processing was deferred
+     *
+     * @return number of waves checked
+     */
+    int process(Map<String, Recording> tracks, long time) {
+        long from = processed < 0 || processed >= time ? time : max(processed + 1, time - mask);
+        processed = time;
+        int checked = 0;
+        for (long tick = from; tick <= time; tick++) {
+            checked += process(tracks, (int) (tick & mask), time);
+        }
+        return checked;
+    }
+
+    private int process(Map<String, Recording> tracks, int bucket, long time) {
+        Wave wave = buckets[bucket];
+        buckets[bucket] = null;
+        int checked = 0;
+        while (wave != null) {
+            Wave next = wave.next;
+            size--;
+            if (wave.dueTime > time) {
+                add(wave, wave.dueTime); // not due yet, on a later lap of the ring
+            } else {
+                checked++;
+                if (wave.checkBreak(tracks, time)) {
+                    recycle(wave);
+                } else {
+                    add(wave, wave.earliestBreak(time, wave.gap));
+                }
+            }
+            wave = next;
+        }
+        return checked;
+    }
+
+    private void recycle(Wave wave) {
+        wave.target = null;
+        wave.stats = null;
+        wave.situations = null;
+        wave.next = free;
+        free = wave;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int bucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * First wave in a bucket. Follow {@link Wave#next} for the rest.
+     */
+    Wave head(int bucket) {
+        return buckets[bucket];
+    }
+}